@@ -20,10 +20,13 @@ public class AppStarter {
         addOption("f", "force", false, "Overwrite existing file(s).").
         addOption(null, "pdfa", false, "Check PDF/A compliance before signing.").
         addOption(null, "parents", false, "Create all parent directories for target if needed.").
-        addOption("d", "driver", true, "PCKS driver name for signing. Supported values: eid, secure_store, monet, gemalto.").
-        addOption(null, "slot-id", true, "Slot ID for PKCS11 driver. If not specified, first available slot is used.").
+        addOption("d", "driver", true, "PCKS driver name for signing. Supported values: eid, secure_store, monet, gemalto, keystore (file from AUTOGRAM_KEYSTORE_PATH, its password from AUTOGRAM_KEYSTORE_PIN).").
+        addOption(null, "slot-id", true, "Slot ID for PKCS11 driver. If not specified, first available slot is used. Comma separated slot IDs sign with several tokens at once, they must have keys with the same certificate subject and the same PIN.").
         addOption(null, "pdf-level", true, "PDF signature level. Supported values: PAdES_BASELINE_B (default), XAdES_BASELINE_B, CAdES_BASELINE_B.").
-        addOption(null, "en319132", false, "Sign according to EN 319 132 or EN 319 122.");
+        addOption(null, "en319132", false, "Sign according to EN 319 132 or EN 319 122.").
+        addOption(null, "parallel", true, "Number of files prepared, checked and saved in parallel. Each token still signs one file at a time. Default is 1.").
+        addOption(null, "recursive", false, "Sign also files in subdirectories of the source directory. Target directory mirrors their structure.").
+        addOption(null, "bundle", false, "Sign all source files with one signature into a single ASiC-E container, the token signs only once. Uses CAdES with --pdf-level CAdES_BASELINE_B, XAdES otherwise. Target is the container file.");
 
     public static void start(String[] args) {
         try {
@@ -72,6 +75,10 @@ public class AppStarter {
                 autogram --cli -s target/directory-example -t target/non-existent-dir/output-example --parents
                 autogram --cli -s target/directory-example/file-example.pdf -pdfa
                 autogram --cli -s target/directory-example/file-example.pdf -d eid
+                autogram --cli -s target/directory-example -t target/output-example --parallel 4
+                autogram --cli -s target/directory-example -t target/output-example --recursive
+                autogram --cli -s target/directory-example -t target/output-example.asice --bundle
+                autogram --cli -s target/directory-example -t target/output-example -d secure_store --slot-id 0,1 --parallel 4
                 """;
         final PrintWriter pw = new PrintWriter(System.out);
         formatter.printUsage(pw, 80, syntax);
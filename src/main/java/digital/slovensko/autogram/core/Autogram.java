@@ -1,19 +1,20 @@
 package digital.slovensko.autogram.core;
 
 import digital.slovensko.autogram.core.errors.AutogramException;
-import digital.slovensko.autogram.core.errors.BatchConflictException;
-import digital.slovensko.autogram.core.errors.BatchNotStartedException;
+import digital.slovensko.autogram.core.errors.BatchNotFoundException;
 import digital.slovensko.autogram.core.errors.UnrecognizedException;
 import digital.slovensko.autogram.core.visualization.DocumentVisualizationBuilder;
 import digital.slovensko.autogram.core.visualization.UnsupportedVisualization;
 import digital.slovensko.autogram.drivers.TokenDriver;
 import digital.slovensko.autogram.ui.BatchUiResult;
 import digital.slovensko.autogram.ui.UI;
+import digital.slovensko.autogram.util.Logging;
 import digital.slovensko.autogram.util.PDFUtils;
 import eu.europa.esig.dss.model.DSSException;
 import eu.europa.esig.dss.pdfa.PDFAStructureValidator;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -21,9 +22,9 @@ import java.util.function.Consumer;
 
 public class Autogram {
     private final UI ui;
-    /** Current batch, should be null if no batch was started yet */
-    private Batch batch = null;
-    private final DriverDetector driverDetector;
+    /** Batches in progress, several may run at once */
+    private final BatchRegistry batches = BatchRegistry.fromConfiguration();
+    private final TokenInventory tokenInventory;
     private final boolean shouldDisplayVisualizationError;
     private final Integer slotId;
 
@@ -41,7 +42,7 @@ public class Autogram {
 
     public Autogram(UI ui, boolean shouldDisplayVisualizationError , DriverDetector driverDetector, Integer slotId) {
         this.ui = ui;
-        this.driverDetector = driverDetector;
+        this.tokenInventory = new TokenInventory(driverDetector);
         this.slotId = slotId;
         this.shouldDisplayVisualizationError = shouldDisplayVisualizationError;
     }
@@ -70,7 +71,7 @@ public class Autogram {
         if (!job.shouldCheckPDFCompliance())
             return;
 
-        ui.onWorkThreadDo(() -> {
+        ui.onWorkThreadDo(ExecutorRegistry.Pool.VALIDATION, () -> {
             var result = new PDFAStructureValidator().validate(job.getDocument());
             if (!result.isCompliant()) {
                 ui.onUIThreadDo(() -> ui.onPDFAComplianceCheckFailed(job));
@@ -79,7 +80,7 @@ public class Autogram {
     }
 
     public void startVisualization(SigningJob job) {
-        ui.onWorkThreadDo(() -> {
+        ui.onWorkThreadDo(ExecutorRegistry.Pool.VISUALIZATION, () -> {
             if (PDFUtils.isPdfAndPasswordProtected(job.getDocument())) {
                 ui.onUIThreadDo(() -> {
                     ui.showError(new AutogramException("Nastala chyba", "Dokument je chránený heslom", "Snažíte sa podpísať dokument chránený heslom, čo je funkcionalita, ktorá nie je podporovaná.\n\nOdstráňte ochranu heslom a potom budete môcť dokument podpísať."));
@@ -104,7 +105,7 @@ public class Autogram {
     }
 
     public void sign(SigningJob job, SigningKey signingKey) {
-        ui.onWorkThreadDo(() -> {
+        ui.onWorkThreadDo(ExecutorRegistry.Pool.SIGNING, () -> {
             try {
                 job.signWithKeyAndRespond(signingKey);
                 ui.onUIThreadDo(() -> ui.onSigningSuccess(job));
@@ -125,9 +126,7 @@ public class Autogram {
      * @param responder              - callback for http response
      */
     public void batchStart(int totalNumberOfDocuments, BatchResponder responder) {
-        if (batch != null && !batch.isEnded())
-            throw new BatchConflictException("Iné hromadné podpisovanie už prebieha");
-        batch = new Batch(totalNumberOfDocuments);
+        var batch = batches.register(new Batch(totalNumberOfDocuments));
 
         var startBatchTask = new AutogramBatchStartCallback(batch, responder);
 
@@ -143,13 +142,11 @@ public class Autogram {
      * @param batchId - current batch ID, used to authenticate the request
      */
     public void batchSign(SigningJob job, String batchId) {
-        if (batch == null) throw new BatchNotStartedException(); // TODO replace with checked exception
-
-        batch.addJob(batchId);
+        var batch = batches.get(batchId);
+        batch.addJob(batchId, job);
 
-        ui.onWorkThreadDo(() -> {
-            ui.signBatch(job, batch.getSigningKey());
-        });
+        batch.getSigningPipeline().submit(job, batch.getSigningKey(),
+                () -> ui.onUIThreadDo(() -> ui.onBatchDocumentProcessed(batch)));
     }
 
     /**
@@ -158,7 +155,7 @@ public class Autogram {
      * @param batchId - current batch ID, used to authenticate the request
      */
     public boolean batchEnd(String batchId) {
-        batch.validate(batchId);
+        var batch = getBatch(batchId);
         batch.end();
         ui.onUIThreadDo(() -> {
             ui.cancelBatch(batch);
@@ -167,13 +164,31 @@ public class Autogram {
     }
 
     public Batch getBatch(String batchId) {
-        if (batch == null) throw new BatchNotStartedException(); // TODO replace with checked exception
+        var batch = batches.get(batchId);
         batch.validate(batchId);
         return batch;
     }
 
+    /**
+     * Batch for reading its progress, also after it has ended or expired
+     */
+    public Batch getBatchForProgress(String batchId) {
+        var batch = batches.find(batchId);
+        if (batch == null)
+            throw new BatchNotFoundException();
+
+        return batch;
+    }
+
+    /**
+     * Detects drivers again right away, e.g. after the keystore file in settings changed
+     */
+    public void refreshDrivers() {
+        ui.onWorkThreadDo(tokenInventory::refresh);
+    }
+
     public void pickSigningKeyAndThen(Consumer<SigningKey> callback) {
-        var drivers = driverDetector.getAvailableDrivers();
+        var drivers = tokenInventory.getAvailableDrivers();
         ui.pickTokenDriverAndThen(drivers,
                 (driver) -> requestPasswordAndThen(driver, callback));
     }
@@ -185,11 +200,59 @@ public class Autogram {
 
     private void fetchKeysAndThen(TokenDriver driver, char[] password, Consumer<SigningKey> callback) {
         try {
-            var token = driver.createTokenWithPassword(slotId, password);
-            var keys = token.getKeys();
+            var openedToken = tokenInventory.open(driver, slotId, password);
+            var keys = openedToken.getKeys();
+
+            ui.onUIThreadDo(() -> ui.pickKeyAndThen(keys,
+                    (privateKey) -> callback.accept(tokenInventory.createSigningKey(openedToken, privateKey)),
+                    () -> tokenInventory.release(openedToken)));
+        } catch (DSSException e) {
+            ui.onUIThreadDo(() -> ui.onPickSigningKeyFailed(AutogramException.createFromDSSException(e)));
+        }
+    }
+
+    /**
+     * Opens the picked driver on all the slots with the same password. The key picked on the first slot decides which
+     * keys are used on the other slots, see {@link SigningKeyPool#findEquivalentKey}. Slots which fail to open or have
+     * no such key are left out of the pool.
+     *
+     * Pools are picked by the CLI only, a batch started over HTTP signs with the single key picked in its dialog.
+     */
+    public void pickSigningKeyPoolAndThen(List<Integer> slotIds, Consumer<SigningKeyPool> callback) {
+        var drivers = tokenInventory.getAvailableDrivers();
+        ui.pickTokenDriverAndThen(drivers, (driver) -> ui.requestPasswordAndThen(driver,
+                (password) -> ui.onWorkThreadDo(() -> fetchKeyPoolAndThen(driver, slotIds, password, callback))));
+    }
+
+    private void fetchKeyPoolAndThen(TokenDriver driver, List<Integer> slotIds, char[] password,
+            Consumer<SigningKeyPool> callback) {
+        try {
+            var openedToken = tokenInventory.open(driver, slotIds.get(0), password);
+            var keys = openedToken.getKeys();
+
+            ui.onUIThreadDo(() -> ui.pickKeyAndThen(keys, (privateKey) -> ui.onWorkThreadDo(() -> {
+                var signingKeys = new ArrayList<SigningKey>();
+                signingKeys.add(tokenInventory.createSigningKey(openedToken, privateKey));
+
+                for (var slotId : slotIds.subList(1, slotIds.size())) {
+                    try {
+                        var slotToken = tokenInventory.open(driver, slotId, password);
+                        var slotKey = SigningKeyPool.findEquivalentKey(privateKey, slotToken.getKeys());
+
+                        if (slotKey != null) {
+                            signingKeys.add(tokenInventory.createSigningKey(slotToken, slotKey));
+                        } else {
+                            Logging.log("Slot " + slotId + " has no key equivalent to "
+                                    + privateKey.getCertificate().getSubject().getRFC2253() + ", skipping");
+                            tokenInventory.release(slotToken);
+                        }
+                    } catch (DSSException e) {
+                        Logging.log("Slot " + slotId + " could not be opened, skipping: " + e);
+                    }
+                }
 
-            ui.onUIThreadDo(
-                    () -> ui.pickKeyAndThen(keys, (privateKey) -> callback.accept(new SigningKey(token, privateKey))));
+                callback.accept(new SigningKeyPool(signingKeys));
+            }), () -> tokenInventory.release(openedToken)));
         } catch (DSSException e) {
             ui.onUIThreadDo(() -> ui.onPickSigningKeyFailed(AutogramException.createFromDSSException(e)));
         }
@@ -23,6 +23,10 @@ public class AutogramBatchStartCallback implements Consumer<SigningKey> {
             batch.start(key);
             handleSuccess();
         } catch (Exception e) {
+            // the batch did not take the key over, nobody else would close it
+            if (key != null && batch.getSigningKey() != key)
+                key.close();
+
             handleException(e);
         }
     }
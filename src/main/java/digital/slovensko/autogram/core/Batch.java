@@ -1,8 +1,15 @@
 package digital.slovensko.autogram.core;
 
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import digital.slovensko.autogram.core.errors.AutogramException;
 import digital.slovensko.autogram.core.errors.BatchEndedException;
 import digital.slovensko.autogram.core.errors.BatchExpiredException;
 import digital.slovensko.autogram.core.errors.BatchInvalidIdException;
@@ -15,55 +22,127 @@ enum BatchState {
 /**
  * Batch is a session for signing multiple documents with the same key.
  * 
- * This class is used for checking runtime conditions and tracking progress.
+ * This class is used for checking runtime conditions and tracking progress. Jobs are added and completed from
+ * different threads, so the progress is kept in atomic counters and concurrent collections. The batch owns its signing
+ * key, other batches and single signings use their own keys, and closes it when it ends.
  */
 public class Batch {
+    public enum DocumentState {
+        PENDING, SIGNED, FAILED
+    }
+
+    /**
+     * Progress of a single document of the batch, in the order the documents were added
+     */
+    public static class DocumentProgress {
+        private final int index;
+        private final String name;
+        private volatile DocumentState state = DocumentState.PENDING;
+        private volatile AutogramException error = null;
+
+        DocumentProgress(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DocumentState getState() {
+            return state;
+        }
+
+        public AutogramException getError() {
+            return error;
+        }
+    }
+
     private final String batchId = generateNewBatchId();
     private final int totalNumberOfDocuments;
 
-    private BatchState state = BatchState.INITIALIZED;
-    private SigningKey signingKey = null;
+    private volatile BatchState state = BatchState.INITIALIZED;
+    private volatile SigningKey signingKey = null;
+    private final AtomicBoolean signingKeyClosed = new AtomicBoolean();
 
-    private Date expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10);
-    private int addedDocumentsCount = 0;
-    private int successfulDocumentsCount = 0;
-    private int failedDocumentsCount = 0;
+    private volatile Date expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10);
+    private volatile Date startDate = null;
+    private final AtomicInteger addedDocumentsCount = new AtomicInteger();
+    private final AtomicInteger successfulDocumentsCount = new AtomicInteger();
+    private final AtomicInteger failedDocumentsCount = new AtomicInteger();
+    private final ConcurrentLinkedQueue<DocumentProgress> documents = new ConcurrentLinkedQueue<>();
+    private final Map<Responder, DocumentProgress> documentsByResponder = new ConcurrentHashMap<>();
+    private final BatchSigningPipeline signingPipeline;
 
     public Batch(int totalNumberOfDocuments) {
+        this(totalNumberOfDocuments, BatchSigningPipeline.fromConfiguration());
+    }
+
+    public Batch(int totalNumberOfDocuments, BatchSigningPipeline signingPipeline) {
         this.totalNumberOfDocuments = totalNumberOfDocuments;
+        this.signingPipeline = signingPipeline;
         resetExpirationDate();
     }
 
-    public void start(SigningKey key) {
+    public synchronized void start(SigningKey key) {
         if (state != BatchState.INITIALIZED)
             throw new BatchEndedException("Nie je možné opätovne spustiť hromadné podpisovanie");
-        state = BatchState.STARTED;
         signingKey = key;
+        startDate = new Date();
+        state = BatchState.STARTED;
     }
 
-    public void addJob(String batchId) {
+    /**
+     * Adds the job to the batch and starts tracking progress of its document
+     */
+    public void addJob(String batchId, SigningJob job) {
         validate(batchId);
 
-        if (this.totalNumberOfDocuments <= this.addedDocumentsCount)
+        var index = addedDocumentsCount.getAndUpdate(added -> added < totalNumberOfDocuments ? added + 1 : added);
+        if (index >= totalNumberOfDocuments)
             throw new IllegalAccessError("Sent more sign requests than declared at start");
 
-        addedDocumentsCount++;
+        var progress = new DocumentProgress(index, job.getDocument().getName());
+        documents.add(progress);
+        documentsByResponder.put(job.getResponder(), progress);
     }
 
-    public void onJobSuccess() {
-        successfulDocumentsCount++;
+    public void onJobSuccess(Responder responder) {
+        successfulDocumentsCount.incrementAndGet();
+        updateDocument(responder, DocumentState.SIGNED, null);
         Logging.log("Batch " + batchId + " success");
         log();
     }
 
-    public void onJobFailure() {
-        failedDocumentsCount++;
+    public void onJobFailure(Responder responder, AutogramException error) {
+        failedDocumentsCount.incrementAndGet();
+        updateDocument(responder, DocumentState.FAILED, error);
         Logging.log("Batch " + batchId + " failed");
         log();
     }
 
-    public void end() {
+    private void updateDocument(Responder responder, DocumentState state, AutogramException error) {
+        var progress = documentsByResponder.remove(responder);
+        if (progress == null)
+            return;
+
+        progress.error = error;
+        progress.state = state;
+    }
+
+    /**
+     * Ends the batch and closes its signing key in background, sign operations already queued on the key finish first
+     */
+    public synchronized void end() {
         state = BatchState.ENDED;
+
+        var key = signingKey;
+        if (key != null && signingKeyClosed.compareAndSet(false, true))
+            ExecutorRegistry.getInstance().execute(ExecutorRegistry.Pool.WORK, key::close);
     }
 
     private void validateInternal() {
@@ -109,28 +188,67 @@ public class Batch {
     }
 
     public int getProcessedDocumentsCount(){
-        return successfulDocumentsCount + failedDocumentsCount;
+        return successfulDocumentsCount.get() + failedDocumentsCount.get();
+    }
+
+    public int getAddedDocumentsCount() {
+        return addedDocumentsCount.get();
+    }
+
+    public int getSuccessfulDocumentsCount() {
+        return successfulDocumentsCount.get();
+    }
+
+    public int getFailedDocumentsCount() {
+        return failedDocumentsCount.get();
+    }
+
+    public String getState() {
+        return state.name();
+    }
+
+    /**
+     * @return time the signing key was picked and the batch started, null if not started yet
+     */
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public List<DocumentProgress> getDocuments() {
+        return List.copyOf(documents);
     }
 
     public SigningKey getSigningKey() {
         return signingKey;
     }
 
-    // private
-    private static String generateNewBatchId() {
-        return UUID.randomUUID().toString();
+    BatchSigningPipeline getSigningPipeline() {
+        return signingPipeline;
+    }
+
+    String getId() {
+        return batchId;
+    }
+
+    Date getExpirationDate() {
+        return expriationDate;
     }
 
-    private boolean isExpired() {
+    boolean isExpired() {
         return expriationDate.before(new Date());
     }
 
+    // private
+    private static String generateNewBatchId() {
+        return UUID.randomUUID().toString();
+    }
+
     public void resetExpirationDate() {
         expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10); // 1 minute
     }
 
     public void log() {
-        Logging.log("Batch " + batchId + " state: " + state + " processed: " + addedDocumentsCount + " total: " + totalNumberOfDocuments);
+        Logging.log("Batch " + batchId + " state: " + state + " processed: " + addedDocumentsCount.get() + " total: " + totalNumberOfDocuments);
     }
 
 }
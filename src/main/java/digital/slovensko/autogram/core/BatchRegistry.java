@@ -0,0 +1,89 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+import digital.slovensko.autogram.core.errors.BatchConflictException;
+import digital.slovensko.autogram.core.errors.BatchInvalidIdException;
+import digital.slovensko.autogram.core.errors.BatchNotStartedException;
+
+/**
+ * Batches keyed by their ID, so independent batches (e.g. from two browser tabs) can run at the same time, each with
+ * its own signing key.
+ *
+ * Batches are kept for a retention period after they expire, so requests for them still fail with the batch specific
+ * error instead of an unknown ID. After that they are swept on the next registration or lookup and ended, which closes
+ * their signing keys.
+ */
+public class BatchRegistry {
+    private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final int maxActiveBatches;
+    private final long retentionMillis;
+
+    /**
+     * @param maxActiveBatches - maximum number of batches which are not ended and not expired, 0 disables the limit
+     * @param retentionMillis  - how long an expired batch is kept before it is swept
+     */
+    public BatchRegistry(int maxActiveBatches, long retentionMillis) {
+        this.maxActiveBatches = maxActiveBatches;
+        this.retentionMillis = retentionMillis;
+    }
+
+    public static BatchRegistry fromConfiguration() {
+        return new BatchRegistry(Integer.parseInt(getProperty("batch.maxActive")),
+                Long.parseLong(getProperty("batch.retentionSeconds")) * 1000);
+    }
+
+    public synchronized Batch register(Batch batch) {
+        sweepExpired();
+        if (maxActiveBatches > 0 && getActiveCount() >= maxActiveBatches)
+            throw new BatchConflictException("Naraz môže prebiehať najviac " + maxActiveBatches + " hromadných podpisovaní");
+
+        batches.put(batch.getId(), batch);
+        return batch;
+    }
+
+    /**
+     * @return batch with the given ID, not validated yet
+     */
+    public Batch get(String batchId) {
+        sweepExpired();
+        if (batches.isEmpty())
+            throw new BatchNotStartedException();
+
+        var batch = batchId == null ? null : batches.get(batchId);
+        if (batch == null)
+            throw new BatchInvalidIdException();
+
+        return batch;
+    }
+
+    /**
+     * @return batch with the given ID or null if there is none
+     */
+    public Batch find(String batchId) {
+        sweepExpired();
+        return batchId == null ? null : batches.get(batchId);
+    }
+
+    public long getActiveCount() {
+        return batches.values().stream().filter(batch -> !batch.isEnded() && !batch.isExpired()).count();
+    }
+
+    public int size() {
+        return batches.size();
+    }
+
+    void sweepExpired() {
+        var sweepBefore = new Date(System.currentTimeMillis() - retentionMillis);
+        batches.values().removeIf(batch -> {
+            if (!batch.getExpirationDate().before(sweepBefore))
+                return false;
+
+            batch.end();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,265 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.UnrecognizedException;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.SignatureValue;
+
+/**
+ * Signs documents of a batch in three stages so that the token, which is the bottleneck, does not wait for the CPU:
+ * upcoming documents are prepared (parsed, transformed, data to sign computed) on the worker executor, the token
+ * signs exactly one of them at a time and signed documents are finished and handed to their responders on the worker
+ * executor again while the token already signs the next one.
+ *
+ * At most lookAhead documents are being prepared or waiting for the token at once, the rest waits unparsed, so a large
+ * batch does not hold all its prepared documents in memory.
+ *
+ * Jobs submitted with a {@link SigningKeyPool} are assigned to one of its tokens when they are prepared, each token
+ * then signs its own documents one at a time while the tokens work in parallel.
+ *
+ * Documents are handed to the token thread of their key without waiting, no pipeline thread is held while a token
+ * signs, so a large batch does not take threads from other batches or interactive signing.
+ */
+public class BatchSigningPipeline {
+    private record Submission(SigningJob job, SigningKeyPool pool, Runnable onProcessed) {
+    }
+
+    private record PreparedSubmission(Submission submission, SigningKeyPool.Member member,
+            SigningJob.PreparedSignature preparedSignature) {
+    }
+
+    /**
+     * Documents prepared for one token, handed to the token as many at once as the key signs concurrently
+     */
+    private static class TokenLane {
+        private final Queue<PreparedSubmission> readyForToken = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger signing = new AtomicInteger();
+        private final int maxSigning;
+
+        TokenLane(int maxSigning) {
+            this.maxSigning = maxSigning;
+        }
+    }
+
+    private final int lookAhead;
+    private final Executor workers;
+    private final Consumer<SigningJob> jobCheck;
+
+    private final Queue<Submission> waiting = new ConcurrentLinkedQueue<>();
+    private final Map<SigningKeyPool.Member, TokenLane> lanes = new ConcurrentHashMap<>();
+    private final Map<SigningKey, SigningKeyPool> singleKeyPools = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger signedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    /**
+     * @param lookAhead maximum number of documents prepared ahead of the token
+     * @param workers   executor for preparing and finishing documents, should allow parallelism
+     */
+    public BatchSigningPipeline(int lookAhead, Executor workers) {
+        this(lookAhead, workers, job -> {
+        });
+    }
+
+    /**
+     * @param jobCheck run on the worker executor before the job is prepared, the job fails if it throws
+     */
+    public BatchSigningPipeline(int lookAhead, Executor workers, Consumer<SigningJob> jobCheck) {
+        if (lookAhead < 1)
+            throw new IllegalArgumentException("Look-ahead must be at least 1");
+
+        this.lookAhead = lookAhead;
+        this.workers = workers;
+        this.jobCheck = jobCheck;
+    }
+
+    public static BatchSigningPipeline fromConfiguration() {
+        return new BatchSigningPipeline(Integer.parseInt(getProperty("batch.pipeline.lookAhead")),
+                ExecutorRegistry.getInstance().get(ExecutorRegistry.Pool.WORK));
+    }
+
+    /**
+     * Queues the job for signing and returns immediately, job responder gets the result
+     *
+     * @param onProcessed called after the responder, both when the job was signed and when it failed
+     */
+    public void submit(SigningJob job, SigningKey key, Runnable onProcessed) {
+        submit(job, singleKeyPools.computeIfAbsent(key, SigningKeyPool::of), onProcessed);
+    }
+
+    /**
+     * Queues the job for signing with one of the pool's keys and returns immediately
+     */
+    public void submit(SigningJob job, SigningKeyPool pool, Runnable onProcessed) {
+        waiting.add(new Submission(job, pool, onProcessed));
+        prepareUpcoming();
+    }
+
+    /**
+     * @return number of documents being prepared or waiting for the token
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public int getWaitingCount() {
+        return waiting.size();
+    }
+
+    public int getSignedCount() {
+        return signedCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    private void prepareUpcoming() {
+        while (true) {
+            var reserved = inFlight.getAndUpdate(count -> count < lookAhead ? count + 1 : count);
+            if (reserved >= lookAhead)
+                return;
+
+            var submission = waiting.poll();
+            if (submission == null) {
+                inFlight.decrementAndGet();
+                // a job added after the poll and before the release would be left waiting otherwise
+                if (waiting.isEmpty())
+                    return;
+
+                continue;
+            }
+
+            workers.execute(() -> prepare(submission));
+        }
+    }
+
+    private void prepare(Submission submission) {
+        // the signing certificate is part of the signed data, so the token is chosen before preparing
+        var member = submission.pool().acquire();
+        SigningJob.PreparedSignature preparedSignature;
+        try {
+            jobCheck.accept(submission.job());
+            preparedSignature = submission.job().prepareSignature(member.getKey());
+        } catch (Exception e) {
+            submission.pool().onCancelled(member);
+            inFlight.decrementAndGet();
+            prepareUpcoming();
+            fail(submission, e);
+            return;
+        }
+
+        var lane = lanes.computeIfAbsent(member, m -> new TokenLane(m.getKey().getSigningConcurrency()));
+        lane.readyForToken.add(new PreparedSubmission(submission, member, preparedSignature));
+        scheduleTokenSigning(lane);
+    }
+
+    private void scheduleTokenSigning(TokenLane lane) {
+        while (true) {
+            var active = lane.signing.get();
+            if (active >= lane.maxSigning)
+                return;
+
+            if (!lane.signing.compareAndSet(active, active + 1))
+                continue;
+
+            var prepared = lane.readyForToken.poll();
+            if (prepared == null) {
+                lane.signing.decrementAndGet();
+                // a document prepared after the poll and before the release would be left waiting otherwise
+                if (lane.readyForToken.isEmpty())
+                    return;
+
+                continue;
+            }
+
+            signOnToken(lane, prepared);
+        }
+    }
+
+    private void signOnToken(TokenLane lane, PreparedSubmission prepared) {
+        var preparedSignature = prepared.preparedSignature();
+        CompletableFuture<SignatureValue> signing;
+        try {
+            signing = prepared.member().getKey().signAsync(preparedSignature.getDataToSign(),
+                    preparedSignature.getDigestAlgorithm());
+        } catch (Exception e) {
+            signing = CompletableFuture.failedFuture(e);
+        }
+
+        signing.whenComplete((signatureValue, error) -> onTokenSigned(lane, prepared, signatureValue, error));
+    }
+
+    /**
+     * Runs on the token thread, only hands the document over to the workers and the token to the next document
+     */
+    private void onTokenSigned(TokenLane lane, PreparedSubmission prepared, SignatureValue signatureValue,
+            Throwable error) {
+        var submission = prepared.submission();
+        if (error == null)
+            submission.pool().onSigned(prepared.member());
+        else
+            submission.pool().onFailed(prepared.member());
+
+        lane.signing.decrementAndGet();
+        inFlight.decrementAndGet();
+        prepareUpcoming();
+        scheduleTokenSigning(lane);
+
+        if (error != null) {
+            var e = toException(error);
+            prepared.preparedSignature().release();
+            workers.execute(() -> fail(submission, e));
+        } else {
+            workers.execute(() -> finish(submission, prepared.preparedSignature(), signatureValue));
+        }
+    }
+
+    private void finish(Submission submission, SigningJob.PreparedSignature preparedSignature,
+            SignatureValue signatureValue) {
+        try {
+            submission.job().finishSignatureAndRespond(preparedSignature, signatureValue);
+        } catch (Exception e) {
+            fail(submission, e);
+            return;
+        }
+
+        signedCount.incrementAndGet();
+        submission.onProcessed().run();
+    }
+
+    private void fail(Submission submission, Exception e) {
+        failedCount.incrementAndGet();
+        submission.job().onDocumentSignFailed(toAutogramException(e));
+        submission.onProcessed().run();
+    }
+
+    private static Exception toException(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+
+        return error instanceof Exception e ? e : new UnrecognizedException(error);
+    }
+
+    private static AutogramException toAutogramException(Exception e) {
+        if (e instanceof AutogramException autogramException)
+            return autogramException;
+
+        if (e instanceof DSSException dssException)
+            return AutogramException.createFromDSSException(dssException);
+
+        return new AutogramException("Document signing has failed", "", "", e);
+    }
+}
@@ -0,0 +1,347 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.CRLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import digital.slovensko.autogram.util.AppDirectories;
+import digital.slovensko.autogram.util.DigestKeyedCache;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import eu.europa.esig.dss.spi.exception.DSSExternalResourceException;
+
+/**
+ * Data loader for OnlineCRLSource and OnlineOCSPSource which keeps downloaded CRLs and OCSP responses until their
+ * nextUpdate, so repeated validations of the same signatures do not download the same revocation data again.
+ *
+ * Responses are kept in a memory LRU bounded by size and in a private per-user directory on disk, so they survive
+ * restarts. Responses without nextUpdate are kept for a default time after their thisUpdate, every response at most for
+ * a maximum time after its thisUpdate. Only the responses are stored on disk, their validity is always read from the
+ * response itself, so a file on disk can not extend it. Responses which can not be parsed are passed through without
+ * caching.
+ */
+public class CachingRevocationDataLoader implements DataLoader {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LoggerFactory.getLogger(CachingRevocationDataLoader.class);
+
+    public enum RevocationType {
+        CRL, OCSP
+    }
+
+    private record Entry(byte[] data, long validUntil) {
+    }
+
+    private final DataLoader dataLoader;
+    private final RevocationType type;
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final Duration defaultValidity;
+    private final Duration maxValidity;
+    private final Clock clock;
+    private Boolean directoryUsable;
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingRevocationDataLoader(DataLoader dataLoader, RevocationType type, Path directory, long maxMemoryBytes,
+            Duration defaultValidity, Duration maxValidity, Clock clock) {
+        this.dataLoader = dataLoader;
+        this.type = type;
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.defaultValidity = defaultValidity;
+        this.maxValidity = maxValidity;
+        this.clock = clock;
+    }
+
+    public static CachingRevocationDataLoader fromConfiguration(DataLoader dataLoader, RevocationType type) {
+        var directory = AppDirectories.getCacheDirectory().resolve(getProperty("cache.revocation.directory"))
+                .resolve(type.name().toLowerCase());
+
+        return new CachingRevocationDataLoader(dataLoader, type, directory,
+                Long.parseLong(getProperty("cache.revocation.maxMemoryBytes")),
+                Duration.ofSeconds(Long.parseLong(getProperty("cache.revocation.defaultValiditySeconds"))),
+                Duration.ofSeconds(Long.parseLong(getProperty("cache.revocation.maxValiditySeconds"))),
+                Clock.systemUTC());
+    }
+
+    @Override
+    public byte[] get(String url) {
+        return load(url, false, () -> dataLoader.get(url));
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public byte[] get(String url, boolean refresh) {
+        return load(url, refresh, () -> dataLoader.get(url, refresh));
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        for (var url : urlStrings) {
+            try {
+                var data = get(url);
+                if (data != null && data.length > 0)
+                    return new DataAndUrl(url, data);
+            } catch (DSSException e) {
+                logger.debug("Unable to load revocation data from {}: {}", url, e.getMessage());
+            }
+        }
+
+        throw new DSSExternalResourceException("Unable to load revocation data from " + urlStrings);
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        var key = url + "\n" + Base64.getEncoder().encodeToString(content);
+        return load(key, false, () -> dataLoader.post(url, content));
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        dataLoader.setContentType(contentType);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private interface Download {
+        byte[] download();
+    }
+
+    private byte[] load(String request, boolean refresh, Download download) {
+        var key = DigestKeyedCache.digest(type + "\n" + request);
+        if (!refresh) {
+            var cached = getCached(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        var data = download.download();
+        if (data != null && data.length > 0)
+            store(key, data);
+
+        return data;
+    }
+
+    private byte[] getCached(String key) {
+        var now = clock.millis();
+        synchronized (this) {
+            var entry = memory.get(key);
+            if (entry != null) {
+                if (entry.validUntil() > now)
+                    return entry.data();
+
+                removeFromMemory(key);
+            }
+        }
+
+        var data = readFromDisk(key);
+        if (data == null)
+            return null;
+
+        var entry = createEntry(data);
+        if (entry == null) {
+            deleteFromDisk(key);
+            return null;
+        }
+
+        putToMemory(key, entry);
+        return entry.data();
+    }
+
+    private void store(String key, byte[] data) {
+        var entry = createEntry(data);
+        if (entry == null)
+            return;
+
+        putToMemory(key, entry);
+        writeToDisk(key, data);
+    }
+
+    /**
+     * @return entry valid until the validity read from the data, at most for the maximum time from now, null if the
+     *         data are not valid anymore or their validity is unknown
+     */
+    private Entry createEntry(byte[] data) {
+        var validUntil = getValidUntil(data);
+        if (validUntil == null)
+            return null;
+
+        var now = clock.millis();
+        var entry = new Entry(data, Math.min(validUntil.getTime(), now + maxValidity.toMillis()));
+        if (entry.validUntil() <= now)
+            return null;
+
+        return entry;
+    }
+
+    /**
+     * @return time until the revocation data can be used instead of downloading them again, null if it is unknown
+     */
+    private Date getValidUntil(byte[] data) {
+        try {
+            return switch (type) {
+                case CRL -> getValidUntil(getCRL(data));
+                case OCSP -> getValidUntil(getBasicOCSPResponse(data));
+            };
+        } catch (CertificateException | CRLException | IOException | OCSPException | ClassCastException e) {
+            logger.debug("Unable to read validity of {} response, not caching it: {}", type, e.getMessage());
+            return null;
+        }
+    }
+
+    private static X509CRL getCRL(byte[] data) throws CertificateException, CRLException {
+        return (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(new ByteArrayInputStream(data));
+    }
+
+    private Date getValidUntil(X509CRL crl) {
+        return nextUpdateOrDefault(crl.getNextUpdate(), crl.getThisUpdate());
+    }
+
+    private static BasicOCSPResp getBasicOCSPResponse(byte[] data) throws IOException, OCSPException {
+        var response = new OCSPResp(data);
+        if (response.getStatus() != OCSPResp.SUCCESSFUL)
+            return null;
+
+        return (BasicOCSPResp) response.getResponseObject();
+    }
+
+    private Date getValidUntil(BasicOCSPResp response) {
+        if (response == null || response.getResponses().length == 0)
+            return null;
+
+        Date validUntil = null;
+        for (var singleResponse : response.getResponses()) {
+            var singleValidUntil = nextUpdateOrDefault(singleResponse.getNextUpdate(), singleResponse.getThisUpdate());
+            if (validUntil == null || singleValidUntil.before(validUntil))
+                validUntil = singleValidUntil;
+        }
+
+        return validUntil;
+    }
+
+    private Date nextUpdateOrDefault(Date nextUpdate, Date thisUpdate) {
+        var limit = thisUpdate.getTime() + maxValidity.toMillis();
+        if (nextUpdate != null)
+            return new Date(Math.min(nextUpdate.getTime(), limit));
+
+        return new Date(Math.min(thisUpdate.getTime() + defaultValidity.toMillis(), limit));
+    }
+
+    private synchronized void putToMemory(String key, Entry entry) {
+        if (entry.data().length > maxMemoryBytes)
+            return;
+
+        removeFromMemory(key);
+        memory.put(key, entry);
+        memoryBytes += entry.data().length;
+
+        var iterator = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            memoryBytes -= iterator.next().data().length;
+            iterator.remove();
+        }
+    }
+
+    private synchronized void removeFromMemory(String key) {
+        var removed = memory.remove(key);
+        if (removed != null)
+            memoryBytes -= removed.data().length;
+    }
+
+    /**
+     * @return true if the directory is private to the current user, checked once, revocation data are kept only in
+     *         memory otherwise
+     */
+    private synchronized boolean isDirectoryUsable() {
+        if (directoryUsable == null) {
+            directoryUsable = AppDirectories.ensurePrivateDirectory(directory);
+            if (!directoryUsable)
+                logger.debug("Not storing {} responses on disk, {} is not a private directory", type, directory);
+        }
+
+        return directoryUsable;
+    }
+
+    private byte[] readFromDisk(String key) {
+        if (!isDirectoryUsable())
+            return null;
+
+        var file = directory.resolve(key);
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+            return null;
+
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            logger.debug("Unable to read cached revocation data {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] data) {
+        if (!isDirectoryUsable())
+            return;
+
+        Path temporaryFile = null;
+        try {
+            temporaryFile = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporaryFile, data);
+
+            // readers never see a partially written file
+            Files.move(temporaryFile, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.debug("Unable to store revocation data in {}: {}", directory, e.getMessage());
+            try {
+                if (temporaryFile != null)
+                    Files.deleteIfExists(temporaryFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void deleteFromDisk(String key) {
+        if (!isDirectoryUsable())
+            return;
+
+        try {
+            Files.deleteIfExists(directory.resolve(key));
+        } catch (IOException e) {
+            logger.debug("Unable to delete cached revocation data {}: {}", key, e.getMessage());
+        }
+    }
+}
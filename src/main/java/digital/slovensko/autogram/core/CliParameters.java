@@ -1,6 +1,7 @@
 package digital.slovensko.autogram.core;
 
 import digital.slovensko.autogram.core.errors.PDFSignatureLevelIsNotValidException;
+import digital.slovensko.autogram.core.errors.ParallelismIsNotValidException;
 import digital.slovensko.autogram.core.errors.SlotIdIsNotANumberException;
 import digital.slovensko.autogram.core.errors.SourceDoesNotExistException;
 import digital.slovensko.autogram.core.errors.TokenDriverDoesNotExistException;
@@ -10,6 +11,8 @@ import eu.europa.esig.dss.enumerations.SignatureLevel;
 import org.apache.commons.cli.CommandLine;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 public class CliParameters {
@@ -17,24 +20,45 @@ public class CliParameters {
     private final String target;
     private final boolean force;
     private final TokenDriver driver;
-    private final Integer slotId;
+    private final List<Integer> slotIds;
     private final boolean checkPDFACompliance;
     private final boolean makeParentDirectories;
     private final SignatureLevel pdfSignatureLevel;
     private final boolean en319132;
+    private final int parallelism;
+    private final boolean recursive;
+    private final boolean bundle;
 
     public CliParameters(CommandLine cmd) throws SourceDoesNotExistException, TokenDriverDoesNotExistException,
-            SlotIdIsNotANumberException, PDFSignatureLevelIsNotValidException {
+            SlotIdIsNotANumberException, PDFSignatureLevelIsNotValidException, ParallelismIsNotValidException {
         source = getValidSource(cmd.getOptionValue("s"));
         target = cmd.getOptionValue("t");
         driver = getValidTokenDriver(cmd.getOptionValue("d"));
-        slotId = getValidSlotId(cmd.getOptionValue("slot-id"));
+        slotIds = getValidSlotIds(cmd.getOptionValue("slot-id"));
         force = cmd.hasOption("f");
         checkPDFACompliance = cmd.hasOption("pdfa");
         makeParentDirectories = cmd.hasOption("parents");
         pdfSignatureLevel = getValidSignatureLevel(
                 cmd.getOptionValue("pdf-level", SignatureLevel.PAdES_BASELINE_B.name()));
         en319132 = cmd.hasOption("en319132");
+        parallelism = getValidParallelism(cmd.getOptionValue("parallel"));
+        recursive = cmd.hasOption("recursive");
+        bundle = cmd.hasOption("bundle");
+    }
+
+    private int getValidParallelism(String optionValue) throws ParallelismIsNotValidException {
+        if (optionValue == null)
+            return 1;
+
+        try {
+            var parallelism = Integer.parseInt(optionValue);
+            if (parallelism < 1)
+                throw new ParallelismIsNotValidException(optionValue);
+
+            return parallelism;
+        } catch (NumberFormatException e) {
+            throw new ParallelismIsNotValidException(optionValue);
+        }
     }
 
     private SignatureLevel getValidSignatureLevel(String optionValue) throws PDFSignatureLevelIsNotValidException {
@@ -45,15 +69,20 @@ public class CliParameters {
         }
     }
 
-    private Integer getValidSlotId(String optionValue) throws SlotIdIsNotANumberException {
+    private List<Integer> getValidSlotIds(String optionValue) throws SlotIdIsNotANumberException {
         if (optionValue == null)
-            return -1;
-
-        try {
-            return Integer.parseInt(optionValue);
-        } catch (NumberFormatException e) {
-            throw new SlotIdIsNotANumberException(optionValue);
+            return List.of(-1);
+
+        var slotIds = new ArrayList<Integer>();
+        for (var slotId : optionValue.split(",")) {
+            try {
+                slotIds.add(Integer.parseInt(slotId.strip()));
+            } catch (NumberFormatException e) {
+                throw new SlotIdIsNotANumberException(optionValue);
+            }
         }
+
+        return List.copyOf(slotIds);
     }
 
     public File getSource() {
@@ -65,7 +94,14 @@ public class CliParameters {
     }
 
     public Integer getSlotId() {
-        return slotId;
+        return slotIds.get(0);
+    }
+
+    /**
+     * @return slots to sign with, more than one when several tokens share the load
+     */
+    public List<Integer> getSlotIds() {
+        return slotIds;
     }
 
     public boolean isForce() {
@@ -118,4 +154,22 @@ public class CliParameters {
     public SignatureLevel pdfSignatureLevel() {
         return pdfSignatureLevel;
     }
+
+    /**
+     * @return number of files prepared and saved at once, 1 signs files one after another
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * @return true to sign all source files with one signature into one ASiC-E container
+     */
+    public boolean isBundle() {
+        return bundle;
+    }
 }
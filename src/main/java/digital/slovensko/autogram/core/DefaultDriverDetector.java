@@ -3,10 +3,14 @@ package digital.slovensko.autogram.core;
 import digital.slovensko.autogram.drivers.PKCS11TokenDriver;
 import digital.slovensko.autogram.drivers.TokenDriver;
 import digital.slovensko.autogram.drivers.FakeTokenDriver;
+import digital.slovensko.autogram.drivers.KeystoreTokenDriver;
 import digital.slovensko.autogram.util.OperatingSystem;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class DefaultDriverDetector implements DriverDetector {
     public static class TokenDriverShortnames {
@@ -15,6 +19,7 @@ public class DefaultDriverDetector implements DriverDetector {
         public static final String MONET = "monet";
         public static final String GEMALTO = "gemalto";
         public static final String FAKE = "fake";
+        public static final String KEYSTORE = "keystore";
     }
 
     public static final List<TokenDriver> LINUX_DRIVERS = List.of(
@@ -42,8 +47,53 @@ public class DefaultDriverDetector implements DriverDetector {
         new FakeTokenDriver("Fake token driver",  Path.of("fakeTokenDriver"), false, TokenDriverShortnames.FAKE)
     );
 
+    private final Supplier<String> keystorePathSupplier;
+    private String keystorePath;
+    /** Keystore file configured in the environment or user settings, null if there is none */
+    private TokenDriver keystoreDriver;
+
+    /**
+     * Keystore path is read from user settings on every detection, so a file picked in settings is offered right away
+     */
+    public DefaultDriverDetector() {
+        this(() -> UserSettings.load().getKeystorePath());
+    }
+
+    /**
+     * @param keystorePath keystore file used unless the environment configures another, may be null
+     */
+    public DefaultDriverDetector(String keystorePath) {
+        this(() -> keystorePath);
+    }
+
+    /**
+     * @param keystorePathSupplier keystore file read on every detection, used unless the environment configures another
+     */
+    public DefaultDriverDetector(Supplier<String> keystorePathSupplier) {
+        this.keystorePathSupplier = keystorePathSupplier;
+        this.keystorePath = keystorePathSupplier.get();
+        this.keystoreDriver = KeystoreTokenDriver.fromEnvironment(keystorePath, TokenDriverShortnames.KEYSTORE);
+    }
+
     public List<TokenDriver> getAvailableDrivers() {
-        return getAllDrivers().stream().filter(TokenDriver::isInstalled).toList();
+        var keystore = getKeystoreDriver();
+        var drivers = keystore == null ? getAllDrivers().stream()
+                : Stream.concat(Stream.of(keystore), getAllDrivers().stream());
+
+        return drivers.filter(TokenDriver::isInstalled).toList();
+    }
+
+    /**
+     * The driver is created again only when the path changes, so tokens kept for it stay open between detections
+     */
+    private synchronized TokenDriver getKeystoreDriver() {
+        var path = keystorePathSupplier.get();
+        if (!Objects.equals(path, keystorePath)) {
+            keystorePath = path;
+            keystoreDriver = KeystoreTokenDriver.fromEnvironment(path, TokenDriverShortnames.KEYSTORE);
+        }
+
+        return keystoreDriver;
     }
 
     private List<TokenDriver> getAllDrivers() {
@@ -0,0 +1,219 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Named, separately sized executors so that one slow subsystem (e.g. TL download or a long signing request)
+ * cannot starve the others. Every pool is instrumented with queue depth and active thread gauges.
+ *
+ * Pools are configured by executor.[name].poolSize properties, 0 sizes the pool to the number of available
+ * processors. HTTP pool is also configured by executor.http.type.
+ */
+public class ExecutorRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorRegistry.class);
+    private static ExecutorRegistry instance;
+
+    public enum Pool {
+        HTTP("http"),
+        TL("tl"),
+        VALIDATION("validation"),
+        VISUALIZATION("visualization"),
+        SIGNING("signing"),
+        WORK("work");
+
+        private final String name;
+
+        Pool(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public record PoolStats(int queueDepth, int activeThreads) {
+    }
+
+    private final Map<Pool, InstrumentedExecutorService> executors = new EnumMap<>(Pool.class);
+
+    public static synchronized ExecutorRegistry getInstance() {
+        if (instance == null)
+            instance = new ExecutorRegistry();
+
+        return instance;
+    }
+
+    public synchronized ExecutorService get(Pool pool) {
+        var executor = executors.get(pool);
+        if (executor == null || executor.isShutdown()) {
+            executor = new InstrumentedExecutorService(create(pool));
+            executors.put(pool, executor);
+        }
+
+        return executor;
+    }
+
+    public void execute(Pool pool, Runnable task) {
+        get(pool).execute(task);
+    }
+
+    public synchronized int getQueueDepth(Pool pool) {
+        var executor = executors.get(pool);
+        return executor == null ? 0 : executor.queued.get();
+    }
+
+    public synchronized int getActiveCount(Pool pool) {
+        var executor = executors.get(pool);
+        return executor == null ? 0 : executor.active.get();
+    }
+
+    public synchronized Map<Pool, PoolStats> getStats() {
+        var stats = new EnumMap<Pool, PoolStats>(Pool.class);
+        executors.forEach((pool, executor) -> stats.put(pool,
+                new PoolStats(executor.queued.get(), executor.active.get())));
+
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Shuts all pools down, waits up to timeout for each of them and interrupts what is still running
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        List<ExecutorService> toShutdown;
+        synchronized (this) {
+            toShutdown = List.copyOf(executors.values());
+            executors.clear();
+        }
+
+        for (var executor : toShutdown)
+            executor.shutdown();
+
+        for (var executor : toShutdown)
+            if (!executor.awaitTermination(timeout, unit))
+                executor.shutdownNow();
+    }
+
+    private static ExecutorService create(Pool pool) {
+        var poolSize = getPoolSize(pool);
+        if (pool == Pool.HTTP && "virtual".equalsIgnoreCase(getProperty("executor.http.type"))) {
+            var executor = createVirtualThreadPerTaskExecutor();
+            if (executor != null)
+                return executor;
+
+            logger.info("Virtual threads are not available, using platform pool of {} threads", poolSize);
+        }
+
+        var executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedDaemonThreadFactory("autogram-" + pool.getName() + "-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    static int getPoolSize(Pool pool) {
+        var poolSize = Integer.parseInt(getProperty("executor." + pool.getName() + ".poolSize"));
+        if (poolSize == 0)
+            return Runtime.getRuntime().availableProcessors();
+
+        return poolSize;
+    }
+
+    /**
+     * Looked up reflectively so that the application still runs on runtimes without virtual threads (Java < 21)
+     */
+    private static ExecutorService createVirtualThreadPerTaskExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static class NamedDaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedDaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class InstrumentedExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+
+        private InstrumentedExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            queued.incrementAndGet();
+            try {
+                delegate.execute(() -> {
+                    queued.decrementAndGet();
+                    active.incrementAndGet();
+                    try {
+                        command.run();
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queued.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Summary of executor gauges, cache hit rates and XSLT timings, written to the debug log so that the effect of the
+ * pools and caches can be checked on a running instance
+ */
+public class PerformanceStats {
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceStats.class);
+
+    public static String describe() {
+        var description = new StringBuilder("executors:");
+        ExecutorRegistry.getInstance().getStats().forEach((pool, stats) -> description.append(' ')
+                .append(pool.getName()).append(" (").append(stats.activeThreads()).append(" active, ")
+                .append(stats.queueDepth()).append(" queued)"));
+
+        return description
+                .append("; xsd cache: ").append(XsdSchemaCache.getCache())
+                .append("; xslt cache: ").append(XsltTemplatesCache.getCache())
+                .append("; xslt output method cache: ").append(XsltOutputMethodDetector.getCache())
+                .append("; schema digest cache: ").append(SchemaDigestCache.getCache())
+                .append("; xslt compile: ").append(XsltTemplatesCache.getCompileStats())
+                .append("; xslt transform: ").append(XsltTemplatesCache.getTransformStats())
+                .toString();
+    }
+
+    public static void log() {
+        if (logger.isDebugEnabled())
+            logger.debug("Performance stats - {}", describe());
+    }
+
+    /**
+     * Logs the stats every stats.logIntervalSeconds, 0 disables it
+     */
+    public static void scheduleLogging(ScheduledExecutorService scheduler) {
+        var interval = Long.parseLong(getProperty("stats.logIntervalSeconds"));
+        if (interval > 0)
+            scheduler.scheduleAtFixedRate(PerformanceStats::log, interval, interval, TimeUnit.SECONDS);
+    }
+}
@@ -12,12 +12,12 @@ public class ResponderInBatch extends Responder {
     }
 
     public void onDocumentSigned(SignedDocument signedDocument) {
-        batch.onJobSuccess();
+        batch.onJobSuccess(this);
         responder.onDocumentSigned(signedDocument);
     }
 
     public void onDocumentSignFailed(AutogramException error) {
-        batch.onJobFailure();
+        batch.onJobFailure(this, error);
         responder.onDocumentSignFailed(error);
     }
 }
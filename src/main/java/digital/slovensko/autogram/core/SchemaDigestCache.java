@@ -0,0 +1,41 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import digital.slovensko.autogram.util.DigestKeyedCache;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.spi.DSSUtils;
+import eu.europa.esig.dss.xades.DSSXMLUtils;
+
+/**
+ * Digests of canonicalized XSD and XSLT referenced from XML Datacontainers. The same schemas are used for every
+ * document of a form type, so they are canonicalized and hashed once and shared across XDCTransformer instances.
+ */
+public class SchemaDigestCache {
+    private static final DigestKeyedCache<String> cache = new DigestKeyedCache<>(
+            Integer.parseInt(getProperty("cache.schemaDigest.maxEntries")));
+
+    /**
+     * @return Base64 encoded digest of the canonicalized data
+     */
+    public static String getDigest(String canonicalizationMethod, DigestAlgorithm digestAlgorithm, String data) {
+        var key = canonicalizationMethod + "\n" + digestAlgorithm + "\n" + DigestKeyedCache.digest(data);
+        return cache.get(key, ignored -> computeDigest(canonicalizationMethod, digestAlgorithm, data));
+    }
+
+    public static DigestKeyedCache<String> getCache() {
+        return cache;
+    }
+
+    static String computeDigest(String canonicalizationMethod, DigestAlgorithm digestAlgorithm, String data) {
+        var asBytes = data.getBytes(StandardCharsets.UTF_8);
+        var canonicalizedData = DSSXMLUtils.canonicalize(canonicalizationMethod, asBytes);
+        var digest = DSSUtils.digest(digestAlgorithm, canonicalizedData);
+        var asBase64 = Base64.getEncoder().encode(digest);
+
+        return new String(asBase64, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.asic.cades.signature.ASiCWithCAdESService;
+import eu.europa.esig.dss.asic.xades.signature.ASiCWithXAdESService;
+import eu.europa.esig.dss.cades.signature.CAdESService;
+import eu.europa.esig.dss.pades.signature.PAdESService;
+import eu.europa.esig.dss.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.xades.signature.XAdESService;
+
+/**
+ * Long-lived DSS signature services shared by all signing jobs instead of constructing a certificate verifier and a
+ * service for every document.
+ *
+ * DSS services keep no per-signature state, everything specific to a document is passed in its signature parameters,
+ * so one instance per signature form can be used from several threads at once. The services are only used for
+ * baseline B signatures, so the shared certificate verifier has no sources which could change.
+ */
+public class SignatureServiceProvider {
+    private static SignatureServiceProvider instance;
+
+    private final XAdESService xadesService;
+    private final CAdESService cadesService;
+    private final PAdESService padesService;
+    private final ASiCWithXAdESService asicWithXAdESService;
+    private final ASiCWithCAdESService asicWithCAdESService;
+
+    SignatureServiceProvider() {
+        var certificateVerifier = new CommonCertificateVerifier();
+        xadesService = new XAdESService(certificateVerifier);
+        cadesService = new CAdESService(certificateVerifier);
+        padesService = new PAdESService(certificateVerifier);
+        asicWithXAdESService = new ASiCWithXAdESService(certificateVerifier);
+        asicWithCAdESService = new ASiCWithCAdESService(certificateVerifier);
+    }
+
+    public static synchronized SignatureServiceProvider getInstance() {
+        if (instance == null)
+            instance = new SignatureServiceProvider();
+
+        return instance;
+    }
+
+    public XAdESService getXAdESService() {
+        return xadesService;
+    }
+
+    public CAdESService getCAdESService() {
+        return cadesService;
+    }
+
+    public PAdESService getPAdESService() {
+        return padesService;
+    }
+
+    public ASiCWithXAdESService getASiCWithXAdESService() {
+        return asicWithXAdESService;
+    }
+
+    public ASiCWithCAdESService getASiCWithCAdESService() {
+        return asicWithCAdESService;
+    }
+}
@@ -7,6 +7,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -27,6 +28,7 @@ import eu.europa.esig.dss.model.DSSException;
 import eu.europa.esig.dss.service.crl.OnlineCRLSource;
 import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
 import eu.europa.esig.dss.service.http.commons.FileCacheDataLoader;
+import eu.europa.esig.dss.service.http.commons.OCSPDataLoader;
 import eu.europa.esig.dss.service.ocsp.OnlineOCSPSource;
 import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
 import eu.europa.esig.dss.spi.x509.CertificateSource;
@@ -46,10 +48,25 @@ import static digital.slovensko.autogram.util.DSSUtils.*;
 public class SignatureValidator {
     private static final String LOTL_URL = "https://ec.europa.eu/tools/lotl/eu-lotl.xml";
     private static final String OJ_URL = "https://eur-lex.europa.eu/legal-content/EN/TXT/?uri=uriserv:OJ.C_.2019.276.01.0001.01.ENG";
-    private CertificateVerifier verifier;
-    private TLValidationJob validationJob;
     private static Logger logger = LoggerFactory.getLogger(SignatureValidator.class);
 
+    /**
+     * Trusted list certificate source and the verifier using it. Never modified once published, refresh builds a new
+     * one, so validations run concurrently and a refresh does not block them.
+     */
+    private record Snapshot(CertificateVerifier verifier, int processedTLs) {
+    }
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final Object refreshLock = new Object();
+    private TLValidationJob validationJob;
+
+    // shared by all snapshots, so cached revocation data survive trusted list refreshes
+    private final CachingRevocationDataLoader crlDataLoader = CachingRevocationDataLoader.fromConfiguration(
+            new CommonsDataLoader(), CachingRevocationDataLoader.RevocationType.CRL);
+    private final CachingRevocationDataLoader ocspDataLoader = CachingRevocationDataLoader.fromConfiguration(
+            new OCSPDataLoader(), CachingRevocationDataLoader.RevocationType.OCSP);
+
     // Singleton
     private static SignatureValidator instance;
 
@@ -63,21 +80,52 @@ public class SignatureValidator {
         return instance;
     }
 
-    public synchronized Reports validate(SignedDocumentValidator docValidator) {
-        docValidator.setCertificateVerifier(verifier);
+    public Reports validate(SignedDocumentValidator docValidator) {
+        docValidator.setCertificateVerifier(getSnapshot().verifier());
 
         // TODO: do not print stack trace inside DSS
         return docValidator.validateDocument();
     }
 
-    public synchronized void refresh() {
-        validationJob.offlineRefresh();
+    private Snapshot getSnapshot() {
+        var current = snapshot.get();
+        if (current != null)
+            return current;
+
+        // validation requested while the first snapshot is still being built
+        synchronized (refreshLock) {
+            current = snapshot.get();
+        }
+
+        if (current == null)
+            throw new IllegalStateException("Signature validator is not initialized");
+
+        return current;
     }
 
-    public synchronized void initialize(ExecutorService executorService, List<String> tlCountries) {
-        SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        logger.debug("Initializing signature validator at {}", formatter.format(new Date()));
+    public void refresh() {
+        synchronized (refreshLock) {
+            if (validationJob == null)
+                return;
 
+            logger.debug("Refreshing signature validator trusted lists");
+            publishSnapshot();
+        }
+    }
+
+    public void initialize(ExecutorService executorService, List<String> tlCountries) {
+        synchronized (refreshLock) {
+            SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+            logger.debug("Initializing signature validator at {}", formatter.format(new Date()));
+
+            initializeValidationJob(executorService, tlCountries);
+            publishSnapshot();
+
+            logger.debug("Signature validator initialized at {}", formatter.format(new Date()));
+        }
+    }
+
+    private void initializeValidationJob(ExecutorService executorService, List<String> tlCountries) {
         validationJob = new TLValidationJob();
 
         var lotlSource = new LOTLSource();
@@ -97,22 +145,29 @@ public class SignatureValidator {
         onlineFileLoader.setDataLoader(new CommonsDataLoader());
         validationJob.setOnlineDataLoader(onlineFileLoader);
 
-        var trustedListCertificateSource = new TrustedListsCertificateSource();
-        validationJob.setTrustedListCertificateSource(trustedListCertificateSource);
         validationJob.setListOfTrustedListSources(lotlSource);
         validationJob.setSynchronizationStrategy(new ExpirationAndSignatureCheckStrategy());
         validationJob.setExecutorService(executorService);
         validationJob.setDebug(false);
+    }
+
+    /**
+     * Synchronizes the trusted lists into a fresh certificate source and publishes it together with a new verifier.
+     * Readers keep using the previous snapshot until then. Callers hold refreshLock.
+     */
+    private void publishSnapshot() {
+        var trustedListCertificateSource = new TrustedListsCertificateSource();
+        validationJob.setTrustedListCertificateSource(trustedListCertificateSource);
 
         logger.debug("Starting signature validator offline refresh");
         validationJob.offlineRefresh();
 
-        verifier = new CommonCertificateVerifier();
+        var verifier = new CommonCertificateVerifier();
         verifier.setTrustedCertSources(trustedListCertificateSource);
-        verifier.setCrlSource(new OnlineCRLSource());
-        verifier.setOcspSource(new OnlineOCSPSource());
+        verifier.setCrlSource(new OnlineCRLSource(crlDataLoader));
+        verifier.setOcspSource(new OnlineOCSPSource(ocspDataLoader));
 
-        logger.debug("Signature validator initialized at {}", formatter.format(new Date()));
+        snapshot.set(new Snapshot(verifier, validationJob.getSummary().getNumberOfProcessedTLs()));
     }
 
     private CertificateSource getJournalCertificateSource() throws AssertionError {
@@ -125,7 +180,7 @@ public class SignatureValidator {
         }
     }
 
-    public synchronized ValidationReports getSignatureValidationReport(SigningJob job) {
+    public ValidationReports getSignatureValidationReport(SigningJob job) {
         var documentValidator = createDocumentValidator(job.getDocument());
         if (documentValidator == null)
             return new ValidationReports(null, job);
@@ -181,8 +236,9 @@ public class SignatureValidator {
         return report.getSignatureFormat(report.getSignatureIdList().get(0));
     }
 
-    public synchronized boolean areTLsLoaded() {
+    public boolean areTLsLoaded() {
         // TODO: consider validation turned off as well
-        return validationJob.getSummary().getNumberOfProcessedTLs() > 0;
+        var current = snapshot.get();
+        return current != null && current.processedTLs() > 0;
     }
 }
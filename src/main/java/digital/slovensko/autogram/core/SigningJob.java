@@ -1,32 +1,45 @@
 package digital.slovensko.autogram.core;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.xml.stream.XMLStreamException;
 
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.BundleNotSupportedException;
 import digital.slovensko.autogram.util.Logging;
-import eu.europa.esig.dss.asic.cades.signature.ASiCWithCAdESService;
-import eu.europa.esig.dss.asic.xades.signature.ASiCWithXAdESService;
-import eu.europa.esig.dss.cades.signature.CAdESService;
+import digital.slovensko.autogram.util.SpooledContent;
+import eu.europa.esig.dss.AbstractSignatureParameters;
+import eu.europa.esig.dss.enumerations.ASiCContainerType;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.enumerations.SignatureForm;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.model.CommonDocument;
 import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.model.FileDocument;
-import eu.europa.esig.dss.pades.signature.PAdESService;
-import eu.europa.esig.dss.validation.CommonCertificateVerifier;
-import eu.europa.esig.dss.xades.signature.XAdESService;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.signature.DocumentSignatureService;
+import eu.europa.esig.dss.signature.MultipleDocumentsSignatureService;
 
 import static digital.slovensko.autogram.core.AutogramMimeType.isPDF;
 
 public class SigningJob {
     private final Responder responder;
     private final CommonDocument document;
+    /** All documents signed by the job, more than one when they are bundled into one container */
+    private final List<CommonDocument> documents;
     private final SigningParameters parameters;
     private final MimeType transformationOutputMimeTypeForXdc;
 
     public SigningJob(CommonDocument document, SigningParameters parameters, Responder responder,
             MimeType transformationOutputMimeTypeForXdc) {
         this.document = document;
+        this.documents = List.of(document);
         this.parameters = parameters;
         this.responder = responder;
         this.transformationOutputMimeTypeForXdc = transformationOutputMimeTypeForXdc;
@@ -34,6 +47,25 @@ public class SigningJob {
 
     public SigningJob(CommonDocument document, SigningParameters parameters, Responder responder) {
         this.document = document;
+        this.documents = List.of(document);
+        this.parameters = parameters;
+        this.responder = responder;
+        this.transformationOutputMimeTypeForXdc = null;
+    }
+
+    /**
+     * Job signing all the documents with one signature in one ASiC-E container, so the token signs only once.
+     * The first document stands for the job where a single document is shown, e.g. in visualization.
+     */
+    public SigningJob(List<? extends CommonDocument> documents, SigningParameters parameters, Responder responder) {
+        if (documents.isEmpty())
+            throw new IllegalArgumentException("Signing job needs at least one document");
+
+        validateBundleParameters(parameters);
+        validateBundleDocuments(documents);
+
+        this.document = documents.get(0);
+        this.documents = List.copyOf(documents);
         this.parameters = parameters;
         this.responder = responder;
         this.transformationOutputMimeTypeForXdc = null;
@@ -43,6 +75,18 @@ public class SigningJob {
         return this.document;
     }
 
+    public List<CommonDocument> getDocuments() {
+        return documents;
+    }
+
+    public boolean isBundle() {
+        return documents.size() > 1;
+    }
+
+    Responder getResponder() {
+        return responder;
+    }
+
     public SigningParameters getParameters() {
         return parameters;
     }
@@ -55,109 +99,209 @@ public class SigningJob {
         return document.getMimeType().equals(AutogramMimeType.XML_DATACONTAINER);
     }
 
+    /**
+     * Jobs not created by server have no precomputed output type, detection is memoized so this is cheap. A
+     * transformation which cannot be parsed fails the job rather than being wrapped into the container.
+     */
+    private MimeType getTransformationOutputMimeTypeForXdc() {
+        if (transformationOutputMimeTypeForXdc != null)
+            return transformationOutputMimeTypeForXdc;
+
+        try {
+            return XsltOutputMethodDetector.getOutputMimeType(getParameters().getTransformation());
+        } catch (XMLStreamException e) {
+            Logging.log("Signing Job: " + this.hashCode() + " transformation is not valid XML: " + e.getMessage());
+            throw new AutogramException("Nastala chyba", "Transformácia nie je platný XSLT dokument",
+                    e.getMessage(), e);
+        }
+    }
+
     public void signWithKeyAndRespond(SigningKey key) throws InterruptedException {
+        var preparedSignature = prepareSignature(key);
+        try {
+            var signatureValue = key.sign(preparedSignature.getDataToSign(), preparedSignature.getDigestAlgorithm());
+            finishSignatureAndRespond(preparedSignature, signatureValue);
+        } finally {
+            preparedSignature.release();
+        }
+    }
 
+    /**
+     * Does everything before the token is needed - parses and transforms the document and computes data to sign.
+     * The prepared signature is finished by finishSignatureAndRespond once the token signs the data.
+     */
+    PreparedSignature prepareSignature(SigningKey key) {
         Logging.log("Signing Job: " + this.hashCode() + " file " + getDocument().getName());
+        var services = SignatureServiceProvider.getInstance();
+        if (isBundle())
+            return prepareBundle(key);
+
         boolean isContainer = getParameters().getContainer() != null;
-        var doc = switch (getParameters().getSignatureType()) {
-            case XAdES -> isContainer ? signDocumentAsAsiCWithXAdeS(key) : signDocumentAsXAdeS(key);
-            case CAdES -> isContainer ? signDocumentAsASiCWithCAdeS(key) : signDocumentAsCAdeS(key);
-            case PAdES -> signDocumentAsPAdeS(key);
+        return switch (getParameters().getSignatureType()) {
+            case XAdES -> isContainer ? prepareAsiCWithXAdeS(key)
+                    : prepare(services.getXAdESService(), getDocument(), getParameters().getXAdESSignatureParameters(),
+                            key);
+            case CAdES -> isContainer
+                    ? prepare(services.getASiCWithCAdESService(), getDocument(),
+                            getParameters().getASiCWithCAdESSignatureParameters(), key)
+                    : prepare(services.getCAdESService(), getDocument(), getParameters().getCAdESSignatureParameters(),
+                            key);
+            case PAdES -> prepare(services.getPAdESService(), getDocument(),
+                    getParameters().getPAdESSignatureParameters(), key);
             default -> throw new RuntimeException(
                     "Unsupported signature type: " + getParameters().getSignatureType());
         };
-        responder.onDocumentSigned(new SignedDocument(doc, key.getCertificate()));
+    }
+
+    /**
+     * Releases the prepared signature once the responder has run, whether it succeeded or not
+     */
+    void finishSignatureAndRespond(PreparedSignature preparedSignature, SignatureValue signatureValue) {
+        try {
+            var doc = preparedSignature.finish(signatureValue);
+            responder.onDocumentSigned(new SignedDocument(doc, preparedSignature.getCertificate()));
+        } finally {
+            preparedSignature.release();
+        }
     }
 
     public void onDocumentSignFailed(AutogramException e) {
         responder.onDocumentSignFailed(e);
     }
 
-    private DSSDocument signDocumentAsCAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new CAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getCAdESSignatureParameters();
-
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
-
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+    private PreparedSignature prepareAsiCWithXAdeS(SigningKey key) {
+        if (!getParameters().shouldCreateDatacontainer() || isDocumentXDC())
+            return prepare(SignatureServiceProvider.getInstance().getASiCWithXAdESService(), getDocument(),
+                    getParameters().getASiCWithXAdESSignatureParameters(), key);
+
+        var transformer = XDCTransformer.buildFromSigningParameters(getParameters(),
+                getTransformationOutputMimeTypeForXdc());
+        var datacontainer = transformer.transform(getDocument());
+        try {
+            datacontainer.setMimeType(AutogramMimeType.XML_DATACONTAINER);
+            return prepare(SignatureServiceProvider.getInstance().getASiCWithXAdESService(), datacontainer,
+                    getParameters().getASiCWithXAdESSignatureParameters(), key)
+                    .onRelease(() -> SpooledContent.release(datacontainer));
+        } catch (RuntimeException e) {
+            SpooledContent.release(datacontainer);
+            throw e;
+        }
+    }
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+    /**
+     * @throws BundleNotSupportedException unless the parameters sign into an ASiC-E container with XAdES or CAdES
+     *                                     signature and without XML datacontainer
+     */
+    public static void validateBundleParameters(SigningParameters parameters) {
+        var form = parameters.getSignatureType();
+        if (parameters.getContainer() != ASiCContainerType.ASiC_E
+                || (form != SignatureForm.XAdES && form != SignatureForm.CAdES)
+                || parameters.shouldCreateDatacontainer())
+            throw new BundleNotSupportedException(
+                    "Viacero dokumentov je možné podpísať jedným podpisom iba v kontajneri ASiC-E s podpisom XAdES alebo CAdES, bez vytvárania XML datacontainera.");
     }
 
-    private DSSDocument signDocumentAsAsiCWithXAdeS(SigningKey key) {
-        DSSDocument doc = getDocument();
-        if (getParameters().shouldCreateDatacontainer() && !isDocumentXDC()) {
-            var transformer = XDCTransformer.buildFromSigningParameters(getParameters(),
-                    transformationOutputMimeTypeForXdc);
-            doc = transformer.transform(doc);
-            doc.setMimeType(AutogramMimeType.XML_DATACONTAINER);
-        }
+    /**
+     * @throws BundleNotSupportedException when two documents have the same name, they are stored under it in the
+     *                                     container
+     */
+    public static void validateBundleDocuments(List<? extends CommonDocument> documents) {
+        var names = new HashSet<String>();
+        for (var bundled : documents)
+            if (!names.add(bundled.getName()))
+                throw new BundleNotSupportedException(
+                        "V kontajneri nemôžu byť dva dokumenty s rovnakým názvom \"" + bundled.getName() + "\".");
+    }
 
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new ASiCWithXAdESService(commonCertificateVerifier);
-        var signatureParameters = getParameters().getASiCWithXAdESSignatureParameters();
+    private PreparedSignature prepareBundle(SigningKey key) {
+        var form = getParameters().getSignatureType();
+        List<DSSDocument> bundledDocuments = List.copyOf(documents);
+        var services = SignatureServiceProvider.getInstance();
+        if (form == SignatureForm.XAdES)
+            return prepare(services.getASiCWithXAdESService(), bundledDocuments,
+                    getParameters().getASiCWithXAdESSignatureParameters(), key);
 
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
+        return prepare(services.getASiCWithCAdESService(), bundledDocuments,
+                getParameters().getASiCWithCAdESSignatureParameters(), key);
+    }
 
-        var dataToSign = service.getDataToSign(doc, signatureParameters);
-        var signatureValue = key.sign(dataToSign, getParameters().getDigestAlgorithm());
+    private <P extends AbstractSignatureParameters<?>> PreparedSignature prepare(
+            MultipleDocumentsSignatureService<P, ?> service, List<DSSDocument> documents, P signatureParameters,
+            SigningKey key) {
+        setSigningCertificate(signatureParameters, key);
+        var dataToSign = service.getDataToSign(documents, signatureParameters);
 
-        return service.signDocument(doc, signatureParameters, signatureValue);
+        return new PreparedSignature(dataToSign, getParameters().getDigestAlgorithm(), key.getCertificate(),
+                signatureValue -> service.signDocument(documents, signatureParameters, signatureValue));
     }
 
-    private DSSDocument signDocumentAsXAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new XAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getXAdESSignatureParameters();
-
+    private static void setSigningCertificate(AbstractSignatureParameters<?> signatureParameters, SigningKey key) {
         signatureParameters.setSigningCertificate(key.getCertificate());
         signatureParameters.setCertificateChain(key.getCertificateChain());
         signatureParameters.setSignWithExpiredCertificate(true);
+    }
+
+    private <P extends AbstractSignatureParameters<?>> PreparedSignature prepare(
+            DocumentSignatureService<P, ?> service, DSSDocument document, P signatureParameters, SigningKey key) {
+        setSigningCertificate(signatureParameters, key);
 
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+        var dataToSign = service.getDataToSign(document, signatureParameters);
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+        return new PreparedSignature(dataToSign, getParameters().getDigestAlgorithm(), key.getCertificate(),
+                signatureValue -> service.signDocument(document, signatureParameters, signatureValue));
     }
 
-    private DSSDocument signDocumentAsASiCWithCAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new ASiCWithCAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getASiCWithCAdESSignatureParameters();
+    /**
+     * Document with computed data to sign, waiting for the signature value from the token
+     */
+    static class PreparedSignature {
+        private final ToBeSigned dataToSign;
+        private final DigestAlgorithm digestAlgorithm;
+        private final CertificateToken certificate;
+        private final Function<SignatureValue, DSSDocument> finisher;
+        private Runnable releaser = () -> {
+        };
 
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
+        private PreparedSignature(ToBeSigned dataToSign, DigestAlgorithm digestAlgorithm, CertificateToken certificate,
+                Function<SignatureValue, DSSDocument> finisher) {
+            this.dataToSign = dataToSign;
+            this.digestAlgorithm = digestAlgorithm;
+            this.certificate = certificate;
+            this.finisher = finisher;
+        }
 
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+        ToBeSigned getDataToSign() {
+            return dataToSign;
+        }
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
-    }
+        DigestAlgorithm getDigestAlgorithm() {
+            return digestAlgorithm;
+        }
 
-    private DSSDocument signDocumentAsPAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new PAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getPAdESSignatureParameters();
+        CertificateToken getCertificate() {
+            return certificate;
+        }
 
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
+        private DSSDocument finish(SignatureValue signatureValue) {
+            return finisher.apply(signatureValue);
+        }
 
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+        /**
+         * @param releaser frees what the prepared signature holds, e.g. a spooled datacontainer, run only once
+         */
+        private PreparedSignature onRelease(Runnable releaser) {
+            this.releaser = releaser;
+            return this;
+        }
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+        /**
+         * Frees resources held for finishing, called after the responder or when the signature is abandoned
+         */
+        synchronized void release() {
+            releaser.run();
+            releaser = () -> {
+            };
+        }
     }
 
     public static SigningJob buildFromFile(File file, Responder responder, boolean checkPDFACompliance, SignatureLevel signatureType, boolean isEn319132) {
@@ -172,6 +316,20 @@ public class SigningJob {
         return new SigningJob(document, parameters, responder);
     }
 
+    /**
+     * Bundles the files into one ASiC-E container, with CAdES signature if requested and XAdES otherwise
+     */
+    public static SigningJob buildBundleFromFiles(List<File> files, Responder responder, SignatureLevel signatureType,
+            boolean isEn319132) {
+        var documents = files.stream().map(FileDocument::new).toList();
+        var containerName = files.get(0).getName();
+        var parameters = signatureType == SignatureLevel.CAdES_BASELINE_B
+                ? SigningParameters.buildForASiCWithCAdES(containerName, isEn319132)
+                : SigningParameters.buildForASiCWithXAdES(containerName, isEn319132);
+
+        return new SigningJob(documents, parameters, responder);
+    }
+
     private static SigningParameters getParametersForFile(FileDocument document, boolean checkPDFACompliance, SignatureLevel signatureType, boolean isEn319132) {
         var level = SignatureValidator.getSignedDocumentSignatureLevel(document);
         if (level != null) switch (level) {
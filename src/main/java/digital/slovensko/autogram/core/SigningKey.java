@@ -1,10 +1,27 @@
 package digital.slovensko.autogram.core;
 
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
 import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.Rdn;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import digital.slovensko.autogram.core.errors.SigningKeyClosedException;
+import digital.slovensko.autogram.core.errors.TokenQueueFullException;
+import digital.slovensko.autogram.core.errors.UnrecognizedException;
+import digital.slovensko.autogram.drivers.TokenDriver;
+import digital.slovensko.autogram.util.TimingStats;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.SignatureValue;
 import eu.europa.esig.dss.model.ToBeSigned;
@@ -12,17 +29,168 @@ import eu.europa.esig.dss.model.x509.CertificateToken;
 import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
 import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
 
+/**
+ * Private key on a token together with the only thread allowed to sign with it.
+ *
+ * Token connections (PKCS#11 sessions in particular) are not safe for concurrent use, so sign operations from all
+ * jobs are queued to a single-threaded executor owned by the key, or shared by all keys of a token kept by
+ * {@link TokenInventory}. Keys of drivers which can sign concurrently, like a software keystore, get as many threads
+ * as the driver allows. The queue is bounded, time spent waiting in it and signing on the token is recorded.
+ */
 public class SigningKey {
+    private static final Logger logger = LoggerFactory.getLogger(SigningKey.class);
+    private static final AtomicInteger counter = new AtomicInteger();
+
     final AbstractKeyStoreTokenConnection token;
     final DSSPrivateKeyEntry privateKey;
+    private final int signingConcurrency;
+    private final ThreadPoolExecutor tokenExecutor;
+    private volatile boolean closed = false;
+    private final TimingStats queueWaitStats = new TimingStats();
+    private final TimingStats signingStats = new TimingStats();
 
     public SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey) {
+        this(token, privateKey, Integer.parseInt(getProperty("signing.tokenQueueCapacity")));
+    }
+
+    public SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey, TokenDriver driver) {
+        this(token, privateKey, Integer.parseInt(getProperty("signing.tokenQueueCapacity")),
+                driver.getSigningConcurrency());
+    }
+
+    public SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey, int queueCapacity) {
+        this(token, privateKey, queueCapacity, 1);
+    }
+
+    public SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey, int queueCapacity,
+            int signingConcurrency) {
+        this(token, privateKey, createTokenExecutor(queueCapacity, signingConcurrency), signingConcurrency);
+    }
+
+    /**
+     * Key signing on an executor shared with other keys of the same token, closing the key leaves it running
+     */
+    protected SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey,
+            ThreadPoolExecutor tokenExecutor, int signingConcurrency) {
         this.token = token;
         this.privateKey = privateKey;
+        this.signingConcurrency = signingConcurrency;
+        this.tokenExecutor = tokenExecutor;
+    }
+
+    static ThreadPoolExecutor createTokenExecutor(TokenDriver driver) {
+        return createTokenExecutor(Integer.parseInt(getProperty("signing.tokenQueueCapacity")),
+                driver.getSigningConcurrency());
+    }
+
+    private static ThreadPoolExecutor createTokenExecutor(int queueCapacity, int signingConcurrency) {
+        var name = "autogram-token-" + counter.incrementAndGet();
+        var threadCounter = new AtomicInteger();
+        var tokenExecutor = new ThreadPoolExecutor(signingConcurrency, signingConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    var thread = new Thread(runnable, name + "-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // idle keys do not hold a thread
+        tokenExecutor.allowCoreThreadTimeOut(true);
+        return tokenExecutor;
     }
 
+    /**
+     * Signs on the token thread and waits for the result, can be called from any number of threads at once
+     *
+     * @throws TokenQueueFullException   when too many sign operations are already waiting for this key
+     * @throws SigningKeyClosedException when the key has been closed
+     */
     public SignatureValue sign(ToBeSigned dataToSign, DigestAlgorithm algo) {
-        return token.sign(dataToSign, algo, privateKey);
+        var future = signAsync(dataToSign, algo);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (e.getCause() instanceof Error cause)
+                throw cause;
+
+            throw new UnrecognizedException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new UnrecognizedException(e);
+        }
+    }
+
+    /**
+     * Queues signing on the token thread and returns without waiting for it, the future completes on the token thread
+     *
+     * @throws TokenQueueFullException   when too many sign operations are already waiting for this key
+     * @throws SigningKeyClosedException when the key has been closed
+     */
+    public CompletableFuture<SignatureValue> signAsync(ToBeSigned dataToSign, DigestAlgorithm algo) {
+        if (closed)
+            throw new SigningKeyClosedException();
+
+        var submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWaitStats.recordSince(submitted);
+                return signOnToken(dataToSign, algo);
+            }, tokenExecutor);
+        } catch (RejectedExecutionException e) {
+            if (tokenExecutor.isShutdown())
+                throw new SigningKeyClosedException();
+
+            throw new TokenQueueFullException(estimateQueueSeconds());
+        }
+    }
+
+    /**
+     * @return time the token needs to sign the waiting operations, at least a second
+     */
+    private int estimateQueueSeconds() {
+        var millis = getQueueDepth() * signingStats.getAverageMillis() / signingConcurrency;
+        return (int) Math.max(1, Math.ceil(millis / 1000));
+    }
+
+    /**
+     * Signs with the token, runs on the token thread
+     */
+    protected SignatureValue signOnToken(ToBeSigned dataToSign, DigestAlgorithm algo) {
+        var start = System.nanoTime();
+        try {
+            return token.sign(dataToSign, algo, privateKey);
+        } finally {
+            signingStats.recordSince(start);
+        }
+    }
+
+    /**
+     * @return number of signatures the key computes at once
+     */
+    public int getSigningConcurrency() {
+        return signingConcurrency;
+    }
+
+    /**
+     * @return number of sign operations waiting for the token
+     */
+    public int getQueueDepth() {
+        return tokenExecutor.getQueue().size();
+    }
+
+    /**
+     * @return time sign operations waited in the queue before the token started signing them
+     */
+    public TimingStats getQueueWaitStats() {
+        return queueWaitStats;
+    }
+
+    /**
+     * @return time the token spent signing
+     */
+    public TimingStats getSigningStats() {
+        return signingStats;
     }
 
     public CertificateToken getCertificate() {
@@ -43,7 +211,39 @@ public class SigningKey {
         return privateKey.getCertificateChain();
     }
 
+    /**
+     * Lets queued sign operations finish before the token is closed
+     */
     public void close() {
+        closed = true;
+        closeExecutor();
+
+        logger.debug("Closing signing key, waited in queue {}, signed {}", queueWaitStats, signingStats);
+        closeToken();
+    }
+
+    /**
+     * Shuts the token executor down, keys on a shared executor leave it running for the other keys
+     */
+    protected void closeExecutor() {
+        shutdownTokenExecutor(tokenExecutor);
+    }
+
+    static void shutdownTokenExecutor(ThreadPoolExecutor tokenExecutor) {
+        tokenExecutor.shutdown();
+        try {
+            if (!tokenExecutor.awaitTermination(30, TimeUnit.SECONDS))
+                tokenExecutor.shutdownNow();
+        } catch (InterruptedException e) {
+            tokenExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes the token when the key is closed, keys on a shared token leave it open
+     */
+    protected void closeToken() {
         token.close();
     }
 }
@@ -0,0 +1,188 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import digital.slovensko.autogram.util.Logging;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+
+/**
+ * Several signing keys with equivalent certificates, usually on different cards or HSM slots, used as one.
+ *
+ * Each document is assigned to the member with the fewest documents assigned and not yet signed, ties are taken in
+ * turns. A member whose token failed several times in a row is considered unhealthy and gets no documents until it
+ * cools down, then it is tried again. When all members are unhealthy the least loaded one is used anyway, so signing
+ * does not stop while the tokens recover.
+ */
+public class SigningKeyPool {
+    public static class Member {
+        private final int index;
+        private final SigningKey key;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger signed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long unhealthyUntil = 0;
+
+        Member(int index, SigningKey key) {
+            this.index = index;
+            this.key = key;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public SigningKey getKey() {
+            return key;
+        }
+
+        /**
+         * @return number of documents assigned to this member and not signed or failed yet
+         */
+        public int getPendingCount() {
+            return pending.get();
+        }
+
+        public int getSignedCount() {
+            return signed.get();
+        }
+
+        public int getFailedCount() {
+            return failed.get();
+        }
+
+        public boolean isHealthy() {
+            return System.currentTimeMillis() >= unhealthyUntil;
+        }
+
+        /**
+         * @return signatures per second of time the token spent signing
+         */
+        public double getSignaturesPerSecond() {
+            var stats = key.getSigningStats();
+            return stats.getTotalNanos() == 0 ? 0 : stats.getCount() / (stats.getTotalNanos() / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return "token %d: signed %d, failed %d, %.2f signatures/s, waited in queue %s%s".formatted(index,
+                    getSignedCount(), getFailedCount(), getSignaturesPerSecond(), key.getQueueWaitStats(),
+                    isHealthy() ? "" : ", unhealthy");
+        }
+    }
+
+    private final List<Member> members;
+    private final int unhealthyAfterFailures;
+    private final long retryUnhealthyAfterMillis;
+    private final AtomicInteger nextMember = new AtomicInteger();
+
+    public SigningKeyPool(List<SigningKey> keys) {
+        this(keys, Integer.parseInt(getProperty("signing.pool.unhealthyAfterFailures")),
+                Long.parseLong(getProperty("signing.pool.retryUnhealthyAfterSeconds")) * 1000);
+    }
+
+    public SigningKeyPool(List<SigningKey> keys, int unhealthyAfterFailures, long retryUnhealthyAfterMillis) {
+        if (keys.isEmpty())
+            throw new IllegalArgumentException("Signing key pool needs at least one key");
+
+        var members = new ArrayList<Member>();
+        for (int i = 0; i < keys.size(); i++)
+            members.add(new Member(i, keys.get(i)));
+
+        this.members = List.copyOf(members);
+        this.unhealthyAfterFailures = unhealthyAfterFailures;
+        this.retryUnhealthyAfterMillis = retryUnhealthyAfterMillis;
+    }
+
+    public static SigningKeyPool of(SigningKey key) {
+        return new SigningKeyPool(List.of(key));
+    }
+
+    /**
+     * Key of another token to be used together with the picked one - the same key (same public key) when the tokens
+     * hold copies of it, otherwise a currently valid key whose certificate has the same subject, issuer and key usage
+     *
+     * @return equivalent key or null if there is none
+     */
+    public static DSSPrivateKeyEntry findEquivalentKey(DSSPrivateKeyEntry picked, List<DSSPrivateKeyEntry> keys) {
+        var certificate = picked.getCertificate();
+        for (var key : keys)
+            if (key.getCertificate().getPublicKey().equals(certificate.getPublicKey()))
+                return key;
+
+        var now = new Date();
+        for (var key : keys) {
+            var candidate = key.getCertificate();
+            if (candidate.getSubject().getRFC2253().equals(certificate.getSubject().getRFC2253())
+                    && candidate.getIssuer().getRFC2253().equals(certificate.getIssuer().getRFC2253())
+                    && Arrays.equals(candidate.getCertificate().getKeyUsage(), certificate.getCertificate().getKeyUsage())
+                    && candidate.isValidOn(now))
+                return key;
+        }
+
+        return null;
+    }
+
+    /**
+     * Assigns a document to the least loaded healthy member, the caller must report the outcome with
+     * {@link #onSigned}, {@link #onFailed} or {@link #onCancelled}
+     */
+    public Member acquire() {
+        var start = Math.floorMod(nextMember.getAndIncrement(), members.size());
+        Member leastLoaded = null;
+        Member leastLoadedHealthy = null;
+        for (int i = 0; i < members.size(); i++) {
+            var member = members.get((start + i) % members.size());
+            if (leastLoaded == null || member.getPendingCount() < leastLoaded.getPendingCount())
+                leastLoaded = member;
+
+            if (member.isHealthy() && (leastLoadedHealthy == null
+                    || member.getPendingCount() < leastLoadedHealthy.getPendingCount()))
+                leastLoadedHealthy = member;
+        }
+
+        var member = leastLoadedHealthy != null ? leastLoadedHealthy : leastLoaded;
+        member.pending.incrementAndGet();
+        return member;
+    }
+
+    public void onSigned(Member member) {
+        member.pending.decrementAndGet();
+        member.signed.incrementAndGet();
+        member.consecutiveFailures.set(0);
+    }
+
+    /**
+     * The token failed to sign, repeated failures make the member unhealthy
+     */
+    public void onFailed(Member member) {
+        member.pending.decrementAndGet();
+        member.failed.incrementAndGet();
+        if (member.consecutiveFailures.incrementAndGet() >= unhealthyAfterFailures) {
+            member.consecutiveFailures.set(0);
+            member.unhealthyUntil = System.currentTimeMillis() + retryUnhealthyAfterMillis;
+            Logging.log("Signing key pool " + member + " marked unhealthy");
+        }
+    }
+
+    /**
+     * The document failed before it reached the token, the member is not to blame
+     */
+    public void onCancelled(Member member) {
+        member.pending.decrementAndGet();
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public void close() {
+        members.forEach(member -> member.getKey().close());
+    }
+}
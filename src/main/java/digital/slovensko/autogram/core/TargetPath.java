@@ -4,6 +4,8 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 
 import digital.slovensko.autogram.core.errors.SourceAndTargetTypeMismatchException;
 import digital.slovensko.autogram.core.errors.TargetAlreadyExistsException;
@@ -20,7 +22,10 @@ public class TargetPath {
     private final boolean isForMultipleFiles;
     private final boolean isParents;
     private final boolean isSignatureLevelPades;
+    private final boolean isRecursive;
     private final FileSystem fs;
+    /** Files handed out for saving, sources signed in parallel must not be saved into the same file */
+    private final Set<Path> reservedFiles = new HashSet<>();
 
     public TargetPath(String target, Path source, boolean force, boolean parents, FileSystem fileSystem, boolean isSignatureLevelPades) {
         this(target, source, force, parents, Files.isDirectory(source), fileSystem, isSignatureLevelPades);
@@ -28,7 +33,17 @@ public class TargetPath {
 
     public TargetPath(String target, Path source, boolean force, boolean parents, boolean multipleFiles,
             FileSystem fileSystem, boolean isSignatureLevelPades) {
+        this(target, source, force, parents, multipleFiles, false, fileSystem, isSignatureLevelPades);
+    }
+
+    /**
+     * @param recursive files from subdirectories of the source directory are saved into the same subdirectories of the
+     *                  target directory
+     */
+    public TargetPath(String target, Path source, boolean force, boolean parents, boolean multipleFiles,
+            boolean recursive, FileSystem fileSystem, boolean isSignatureLevelPades) {
         fs = fileSystem;
+        isRecursive = recursive;
         sourceFile = source;
         isForce = force;
         isParents = parents;
@@ -81,8 +96,17 @@ public class TargetPath {
     }
 
     public static TargetPath fromParams(CliParameters params) {
+        var source = params.getSource().toPath();
+        return new TargetPath(params.getTarget(), source, params.isForce(), params.shouldMakeParentDirectories(),
+                Files.isDirectory(source), params.isRecursive(), FileSystems.getDefault(), params.shouldSignPDFAsPades());
+    }
+
+    /**
+     * Single container for all source files, named after the source directory unless the target is given
+     */
+    public static TargetPath forBundle(CliParameters params) {
         return new TargetPath(params.getTarget(), params.getSource().toPath(), params.isForce(),
-                params.shouldMakeParentDirectories(), FileSystems.getDefault(), params.shouldSignPDFAsPades());
+                params.shouldMakeParentDirectories(), false, false, FileSystems.getDefault(), false);
     }
 
     public static TargetPath fromSource(Path source, boolean isSignatureLevelPades) {
@@ -143,24 +167,61 @@ public class TargetPath {
      *
      */
 
-    public Path getSaveFilePath(Path singleSourceFile) {
+    /**
+     * Reserves the file for the source, the file is not given to any other source even with force, so two sources
+     * signed in parallel never overwrite each other
+     */
+    public synchronized Path getSaveFilePath(Path singleSourceFile) {
         var file = _getSaveFilePath(singleSourceFile);
 
-        if (Files.exists(file) && !isForce)
+        if (isReserved(file) || (Files.exists(file) && !isForce))
             throw new TargetAlreadyExistsException();
 
+        reservedFiles.add(file.toAbsolutePath().normalize());
         return file;
     }
 
+    private boolean isReserved(Path file) {
+        return reservedFiles.contains(file.toAbsolutePath().normalize());
+    }
+
+    private boolean exists(Path file) {
+        return Files.exists(file) || isReserved(file);
+    }
+
+    /**
+     * In recursive mode files from subdirectories of the source directory are saved into the same subdirectories of
+     * the target directory, which are created when needed
+     */
+    private Path getTargetDirectoryFor(Path singleSourceFile) {
+        if (!isRecursive || !isForMultipleFiles || sourceFile == null || targetDirectory == null)
+            return targetDirectory;
+
+        var sourceDirectory = sourceFile.toAbsolutePath().normalize();
+        var parent = singleSourceFile.toAbsolutePath().normalize().getParent();
+        if (parent == null || parent.equals(sourceDirectory) || !parent.startsWith(sourceDirectory))
+            return targetDirectory;
+
+        var directory = targetDirectory.resolve(sourceDirectory.relativize(parent).toString());
+        try {
+            Files.createDirectories(directory);
+        } catch (Exception e) {
+            throw new UnableToCreateDirectoryException();
+        }
+
+        return directory;
+    }
+
     private Path _getSaveFilePath(Path singleSourceFile) {
         var targetName = this.targetName == null ? generateTargetName(singleSourceFile) : this.targetName;
-        var targetDirectoryPath = targetDirectory == null ? "" : targetDirectory.toString();
+        var directory = getTargetDirectoryFor(singleSourceFile);
+        var targetDirectoryPath = directory == null ? "" : directory.toString();
         Path targetSingleFile = fs.getPath(targetDirectoryPath, targetName);
 
-        if (!Files.exists(targetSingleFile))
+        if (!exists(targetSingleFile))
             return targetSingleFile;
 
-        if (isForce)
+        if (isForce && !isReserved(targetSingleFile))
             return targetSingleFile;
 
         if (useUniqueFileName) {
@@ -181,7 +242,7 @@ public class TargetPath {
         parent = parent == null ? "" : parent;
         while (true) {
             var newTargetFile = _generateUniqueNameGetNewTargetFile(parent, newBaseName, extension);
-            if (!Files.exists(newTargetFile))
+            if (!exists(newTargetFile))
                 return newTargetFile.toString();
 
             if (count > 1000)
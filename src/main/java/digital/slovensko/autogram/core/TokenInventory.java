@@ -0,0 +1,253 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.TokenRemovedException;
+import digital.slovensko.autogram.drivers.TokenDriver;
+import digital.slovensko.autogram.util.Logging;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+
+/**
+ * Detected drivers and opened tokens with their keys, kept between signings so that picking a key waits neither for
+ * the driver libraries to be looked up nor for the token to be read again.
+ *
+ * Drivers are detected again in the background every drivers.refreshSeconds and tokens of drivers which disappeared
+ * are closed. Tokens are kept only for drivers without a password, a token asking for one is opened for every pick so
+ * the password is always checked. Keys of a kept token are read again on every pick and the token is opened again
+ * when they changed, e.g. another card was inserted. A kept token is also dropped as soon as signing reports it has
+ * been removed.
+ */
+public class TokenInventory {
+    private record TokenKey(TokenDriver driver, Integer slotId) {
+    }
+
+    /**
+     * Token with its keys, either kept by the inventory or opened for a single pick. All keys picked from a kept token
+     * sign on its executor, so they never use the token connection from more threads than the driver allows.
+     */
+    public static class OpenedToken {
+        private final TokenKey tokenKey;
+        private final AbstractKeyStoreTokenConnection token;
+        private final List<DSSPrivateKeyEntry> keys;
+        private final boolean kept;
+        private final ThreadPoolExecutor tokenExecutor;
+
+        private OpenedToken(TokenKey tokenKey, AbstractKeyStoreTokenConnection token, List<DSSPrivateKeyEntry> keys,
+                boolean kept) {
+            this.tokenKey = tokenKey;
+            this.token = token;
+            this.keys = keys;
+            this.kept = kept;
+            this.tokenExecutor = kept ? SigningKey.createTokenExecutor(tokenKey.driver()) : null;
+        }
+
+        public List<DSSPrivateKeyEntry> getKeys() {
+            return keys;
+        }
+
+        public boolean isKept() {
+            return kept;
+        }
+
+        /**
+         * Reads the keys again on the token thread, so it never uses the token connection while a key signs
+         *
+         * @return false if the token can not be read anymore or its keys have other certificates than before
+         */
+        private boolean hasSameKeys() {
+            try {
+                var current = tokenExecutor.submit(token::getKeys).get();
+                return getCertificates(current).equals(getCertificates(keys));
+            } catch (RejectedExecutionException e) {
+                // the queue is full of sign operations, the token is still there
+                return !tokenExecutor.isShutdown();
+            } catch (ExecutionException e) {
+                Logging.log("Reading keys of kept token failed: " + e.getCause());
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private static List<CertificateToken> getCertificates(List<DSSPrivateKeyEntry> keys) {
+            return keys.stream().map(DSSPrivateKeyEntry::getCertificate).toList();
+        }
+    }
+
+    /**
+     * Key on a kept token, closing it leaves the token and its executor open for the next pick
+     */
+    private static class KeptTokenSigningKey extends SigningKey {
+        private final TokenInventory inventory;
+        private final OpenedToken openedToken;
+
+        KeptTokenSigningKey(TokenInventory inventory, OpenedToken openedToken, DSSPrivateKeyEntry privateKey) {
+            super(openedToken.token, privateKey, openedToken.tokenExecutor,
+                    openedToken.tokenKey.driver().getSigningConcurrency());
+            this.inventory = inventory;
+            this.openedToken = openedToken;
+        }
+
+        @Override
+        protected SignatureValue signOnToken(ToBeSigned dataToSign, DigestAlgorithm algo) {
+            try {
+                return super.signOnToken(dataToSign, algo);
+            } catch (DSSException e) {
+                if (AutogramException.createFromDSSException(e) instanceof TokenRemovedException)
+                    inventory.invalidate(openedToken);
+
+                throw e;
+            }
+        }
+
+        @Override
+        protected void closeExecutor() {
+        }
+
+        @Override
+        protected void closeToken() {
+        }
+    }
+
+    private final DriverDetector driverDetector;
+    private final long refreshMillis;
+    private final Map<TokenKey, OpenedToken> tokens = new ConcurrentHashMap<>();
+    private volatile List<TokenDriver> drivers;
+    private ScheduledExecutorService refresher;
+
+    public TokenInventory(DriverDetector driverDetector) {
+        this(driverDetector, Long.parseLong(getProperty("drivers.refreshSeconds")) * 1000);
+    }
+
+    public TokenInventory(DriverDetector driverDetector, long refreshMillis) {
+        this.driverDetector = driverDetector;
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * @return drivers detected by the last refresh, the first call detects them and starts refreshing in background
+     */
+    public List<TokenDriver> getAvailableDrivers() {
+        var cached = drivers;
+        if (cached != null)
+            return cached;
+
+        cached = refresh();
+        startRefreshing();
+        return cached;
+    }
+
+    /**
+     * Detects drivers again and closes kept tokens of drivers which are no longer available
+     */
+    public synchronized List<TokenDriver> refresh() {
+        var detected = driverDetector.getAvailableDrivers();
+        drivers = detected;
+
+        for (var openedToken : tokens.values())
+            if (!detected.contains(openedToken.tokenKey.driver()))
+                invalidate(openedToken);
+
+        return detected;
+    }
+
+    private synchronized void startRefreshing() {
+        if (refresher != null)
+            return;
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "autogram-driver-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                Logging.log("Driver detection failed: " + e);
+            }
+        }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Kept token of the driver and slot, opened and kept now if there is none or the driver needs a password
+     *
+     * @throws DSSException when the token cannot be opened or read
+     */
+    public OpenedToken open(TokenDriver driver, Integer slotId, char[] password) {
+        var tokenKey = new TokenKey(driver, slotId);
+        if (driver.needsPassword())
+            return openToken(tokenKey, password, false);
+
+        var kept = tokens.get(tokenKey);
+        if (kept != null && !kept.hasSameKeys())
+            invalidate(kept);
+
+        return tokens.computeIfAbsent(tokenKey, key -> openToken(key, null, true));
+    }
+
+    private static OpenedToken openToken(TokenKey tokenKey, char[] password, boolean kept) {
+        var token = tokenKey.driver().createTokenWithPassword(tokenKey.slotId(), password);
+        try {
+            return new OpenedToken(tokenKey, token, token.getKeys(), kept);
+        } catch (RuntimeException e) {
+            token.close();
+            throw e;
+        }
+    }
+
+    public SigningKey createSigningKey(OpenedToken openedToken, DSSPrivateKeyEntry privateKey) {
+        if (!openedToken.isKept())
+            return new SigningKey(openedToken.token, privateKey, openedToken.tokenKey.driver());
+
+        return new KeptTokenSigningKey(this, openedToken, privateKey);
+    }
+
+    /**
+     * Closes a token opened for a single pick when no key of it is used, kept tokens stay open
+     */
+    public void release(OpenedToken openedToken) {
+        if (openedToken.isKept())
+            return;
+
+        try {
+            openedToken.token.close();
+        } catch (RuntimeException e) {
+            Logging.log("Closing unused token failed: " + e);
+        }
+    }
+
+    /**
+     * Closes the token unless it was already dropped, the next pick opens it again
+     */
+    public void invalidate(OpenedToken openedToken) {
+        if (!tokens.remove(openedToken.tokenKey, openedToken))
+            return;
+
+        Logging.log("Dropping token of " + openedToken.tokenKey.driver().getName());
+        openedToken.tokenExecutor.shutdown();
+        try {
+            openedToken.token.close();
+        } catch (RuntimeException e) {
+            Logging.log("Closing dropped token failed: " + e);
+        }
+    }
+}
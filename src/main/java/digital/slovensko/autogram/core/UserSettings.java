@@ -20,11 +20,12 @@ public class UserSettings {
     private boolean serverEnabled;
     private boolean expiredCertsEnabled;
     private List<String> trustedList;
+    private String keystorePath;
 
     private UserSettings(SignatureLevel signatureLevel, String driver, boolean en319132,
             boolean signIndividually, boolean correctDocumentDisplay,
             boolean signaturesValidity, boolean pdfaCompliance,
-            boolean serverEnabled, boolean expiredCertsEnabled, List<String> trustedList) {
+            boolean serverEnabled, boolean expiredCertsEnabled, List<String> trustedList, String keystorePath) {
         this.signatureLevel = signatureLevel;
         this.driver = driver;
         this.en319132 = en319132;
@@ -35,6 +36,7 @@ public class UserSettings {
         this.serverEnabled = serverEnabled;
         this.expiredCertsEnabled = expiredCertsEnabled;
         this.trustedList = trustedList;
+        this.keystorePath = keystorePath;
     }
 
     public static UserSettings load() {
@@ -50,6 +52,7 @@ public class UserSettings {
         var serverEnabled = prefs.getBoolean("SERVER_ENABLED", true);
         var expiredCertsEnabled = prefs.getBoolean("EXPIRED_CERTS_ENABLED", false);
         var trustedList = prefs.get("TRUSTED_LIST", "SK,CZ,AT,PL,HU");
+        var keystorePath = prefs.get("KEYSTORE_PATH", "");
 
         var signatureLevelStringConverter = new SignatureLevelStringConverter();
         var signatureLevel = Arrays
@@ -69,7 +72,8 @@ public class UserSettings {
                 pdfaCompliance,
                 serverEnabled,
                 expiredCertsEnabled,
-                trustedList == null ? new ArrayList<>() : new ArrayList<>(List.of(trustedList.split(","))));
+                trustedList == null ? new ArrayList<>() : new ArrayList<>(List.of(trustedList.split(","))),
+                keystorePath.isEmpty() ? null : keystorePath);
     }
 
     public SignatureLevel getSignatureLevel() {
@@ -171,6 +175,18 @@ public class UserSettings {
         save();
     }
 
+    /**
+     * @return PKCS#12 or JKS file offered as a token driver, null if none
+     */
+    public String getKeystorePath() {
+        return keystorePath;
+    }
+
+    public void setKeystorePath(String keystorePath) {
+        this.keystorePath = keystorePath;
+        save();
+    }
+
     private void save() {
         var prefs = Preferences.userNodeForPackage(UserSettings.class);
 
@@ -184,5 +200,6 @@ public class UserSettings {
         prefs.putBoolean("SERVER_ENABLED", serverEnabled);
         prefs.putBoolean("EXPIRED_CERTS_ENABLED", expiredCertsEnabled);
         prefs.put("TRUSTED_LIST", trustedList.stream().collect(Collectors.joining(",")));
+        prefs.put("KEYSTORE_PATH", keystorePath == null ? "" : keystorePath);
     }
 }
@@ -1,34 +1,45 @@
 package digital.slovensko.autogram.core;
 
 import digital.slovensko.autogram.core.errors.InvalidXMLException;
+import digital.slovensko.autogram.util.SpooledContent;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.enumerations.MimeType;
 import eu.europa.esig.dss.enumerations.MimeTypeEnum;
 import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.model.InMemoryDocument;
-import eu.europa.esig.dss.spi.DSSUtils;
-import eu.europa.esig.dss.xades.DSSXMLUtils;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class XDCTransformer {
 
@@ -108,7 +119,25 @@ public class XDCTransformer {
         this.document = document;
     }
 
+    /**
+     * Wraps the document into XML Datacontainer. The document is streamed through a SAX filter which adds the
+     * container envelope, so memory does not grow with the document size. Documents with constructs the filter can
+     * not reproduce byte for byte (DTD, comments or processing instructions outside of the root element) are
+     * wrapped using DOM as before.
+     */
     public DSSDocument transform(DSSDocument dssDocument) {
+        if (containerXmlns != null) {
+            try {
+                return transformStreaming(dssDocument);
+            } catch (StreamingNotSupportedException e) {
+                // fall back to DOM below
+            }
+        }
+
+        return transformDOM(dssDocument);
+    }
+
+    DSSDocument transformDOM(DSSDocument dssDocument) {
         try {
             var xmlByteArrayInput = dssDocument.openStream().readAllBytes();
             parseDOMDocument(new String(xmlByteArrayInput, StandardCharsets.UTF_8));
@@ -127,6 +156,34 @@ public class XDCTransformer {
         }
     }
 
+    DSSDocument transformStreaming(DSSDocument dssDocument) throws StreamingNotSupportedException {
+        var content = new SpooledContent();
+        try (var reader = new InputStreamReader(dssDocument.openStream(), StandardCharsets.UTF_8)) {
+            var parserFactory = SAXParserFactory.newInstance();
+            parserFactory.setNamespaceAware(true);
+
+            var transformerFactory = TransformerFactory.newInstance();
+            transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+
+            var filter = new XMLDataContainerFilter(parserFactory.newSAXParser().getXMLReader());
+            transformerFactory.newTransformer().transform(new SAXSource(filter, new InputSource(reader)),
+                    new StreamResult(content));
+
+            var name = dssDocument.getName();
+            return content.toDocument(name, name != null ? MimeType.fromFileName(name) : null);
+        } catch (TransformerException | ParserConfigurationException | SAXException | IOException e) {
+            content.release();
+            for (Throwable cause = e; cause != null; cause = cause.getCause())
+                if (cause instanceof StreamingNotSupportedException streamingNotSupported)
+                    throw streamingNotSupported;
+
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            content.release();
+            throw e;
+        }
+    }
+
     private void parseDOMDocument(String xmlContent) throws ParserConfigurationException, IOException, SAXException {
         var builderFactory = DocumentBuilderFactory.newInstance();
         builderFactory.setNamespaceAware(true);
@@ -201,12 +258,7 @@ public class XDCTransformer {
     }
 
     private String computeDigest(String data) {
-        var asBytes = data.getBytes(StandardCharsets.UTF_8);
-        var canonicalizedData = DSSXMLUtils.canonicalize(canonicalizationMethod, asBytes);
-        var digest = DSSUtils.digest(digestAlgorithm, canonicalizedData);
-        var asBase64 = Base64.getEncoder().encode(digest);
-
-        return new String(asBase64, StandardCharsets.UTF_8);
+        return SchemaDigestCache.getDigest(canonicalizationMethod, digestAlgorithm, data);
     }
 
     // TODO: These should be configurable
@@ -248,6 +300,15 @@ public class XDCTransformer {
         return element;
     }
 
+    private AttributesImpl createUsedSchemaReferenceAttributes(String digestValue) {
+        var attributes = new AttributesImpl();
+        attributes.addAttribute("", "TransformAlgorithm", "TransformAlgorithm", "CDATA", canonicalizationMethod);
+        attributes.addAttribute("", "DigestMethod", "DigestMethod", "CDATA", toNamespacedString(digestAlgorithm));
+        attributes.addAttribute("", "DigestValue", "DigestValue", "CDATA", digestValue);
+
+        return attributes;
+    }
+
     private static String toNamespacedString(DigestAlgorithm digestAlgorithm) {
         return "urn:oid:" + digestAlgorithm.getOid();
     }
@@ -324,4 +385,186 @@ public class XDCTransformer {
         }
     }
 
+    static class StreamingNotSupportedException extends SAXException {
+        StreamingNotSupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Emits the same events as serializing the DOM built by {@link #transformDocument()} - the root element of the
+     * document is wrapped into xdc:XMLDataContainer/xdc:XMLData and followed by xdc:UsedSchemasReferenced.
+     */
+    private class XMLDataContainerFilter extends XMLFilterImpl implements LexicalHandler {
+        private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+        private static final String XDC_PREFIX = "xdc";
+
+        private final List<String[]> pendingPrefixMappings = new ArrayList<>();
+        private LexicalHandler lexicalHandler;
+        private int depth = 0;
+
+        XMLDataContainerFilter(XMLReader parent) {
+            super(parent);
+        }
+
+        @Override
+        public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+            if (LEXICAL_HANDLER.equals(name)) {
+                lexicalHandler = (LexicalHandler) value;
+                super.setProperty(name, this);
+                return;
+            }
+
+            super.setProperty(name, value);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            pendingPrefixMappings.add(new String[] { prefix, uri });
+        }
+
+        /**
+         * DOM keeps attributes sorted by name and the serializer writes them in that order, so they are sorted here too
+         */
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if (depth == 0)
+                startEnvelope();
+
+            pendingPrefixMappings.sort(Comparator.comparing(mapping -> mapping[0]));
+            for (var mapping : pendingPrefixMappings)
+                super.startPrefixMapping(mapping[0], mapping[1]);
+            pendingPrefixMappings.clear();
+
+            depth++;
+            super.startElement(uri, localName, qName, sorted(atts));
+        }
+
+        private Attributes sorted(Attributes atts) {
+            var indexes = new ArrayList<Integer>(atts.getLength());
+            for (int i = 0; i < atts.getLength(); i++)
+                indexes.add(i);
+            indexes.sort(Comparator.comparing(atts::getQName));
+
+            var sorted = new AttributesImpl();
+            for (var i : indexes)
+                sorted.addAttribute(atts.getURI(i), atts.getLocalName(i), atts.getQName(i), atts.getType(i), atts.getValue(i));
+
+            return sorted;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            depth--;
+
+            if (depth == 0)
+                endEnvelope();
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            if (depth == 0)
+                throw new StreamingNotSupportedException("Processing instruction outside of the root element");
+
+            super.processingInstruction(target, data);
+        }
+
+        private void startEnvelope() throws SAXException {
+            var documentXmlnsMapping = pendingPrefixMappings.stream().filter(m -> m[0].isEmpty()).findFirst();
+            if ((!isNullOrBlank(xsdSchema)) || (!isNullOrBlank(xsltSchema)))
+                documentXmlns = documentXmlnsMapping.map(m -> m[1]).orElse("");
+
+            super.startPrefixMapping(XDC_PREFIX, containerXmlns);
+            startXdcElement("XMLDataContainer", new AttributesImpl());
+
+            var attributes = new AttributesImpl();
+            attributes.addAttribute("", "ContentType", "ContentType", "CDATA", "application/xml; charset=UTF-8");
+            attributes.addAttribute("", "Identifier", "Identifier", "CDATA", identifierUri);
+            attributes.addAttribute("", "Version", "Version", "CDATA", identifierVersion);
+            startXdcElement("XMLData", attributes);
+        }
+
+        private void endEnvelope() throws SAXException {
+            endXdcElement("XMLData");
+            startXdcElement("UsedSchemasReferenced", new AttributesImpl());
+
+            if (xsdSchema != null) {
+                startXdcElement("UsedXSDReference", createUsedSchemaReferenceAttributes(computeDigest(xsdSchema)));
+                writeText(buildXSDReference());
+                endXdcElement("UsedXSDReference");
+            }
+
+            if (xsltSchema != null) {
+                var attributes = createUsedSchemaReferenceAttributes(computeDigest(xsltSchema));
+                attributes.addAttribute("", "ContentType", "ContentType", "CDATA", "application/xslt+xml");
+                attributes.addAttribute("", "MediaDestinationTypeDescription", "MediaDestinationTypeDescription",
+                        "CDATA", mediaDestinationTypeDescription.name());
+                attributes.addAttribute("", "Language", "Language", "CDATA", "sk");
+                startXdcElement("UsedPresentationSchemaReference", attributes);
+                writeText(buildXSLTReference());
+                endXdcElement("UsedPresentationSchemaReference");
+            }
+
+            endXdcElement("UsedSchemasReferenced");
+            endXdcElement("XMLDataContainer");
+            super.endPrefixMapping(XDC_PREFIX);
+        }
+
+        private void startXdcElement(String localName, Attributes attributes) throws SAXException {
+            super.startElement(containerXmlns, localName, XDC_PREFIX + ":" + localName, sorted(attributes));
+        }
+
+        private void endXdcElement(String localName) throws SAXException {
+            super.endElement(containerXmlns, localName, XDC_PREFIX + ":" + localName);
+        }
+
+        private void writeText(String text) throws SAXException {
+            super.characters(text.toCharArray(), 0, text.length());
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException {
+            throw new StreamingNotSupportedException("Document type declaration");
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            if (lexicalHandler != null)
+                lexicalHandler.endDTD();
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            if (lexicalHandler != null)
+                lexicalHandler.startEntity(name);
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            if (lexicalHandler != null)
+                lexicalHandler.endEntity(name);
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            if (lexicalHandler != null)
+                lexicalHandler.startCDATA();
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            if (lexicalHandler != null)
+                lexicalHandler.endCDATA();
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException {
+            if (depth == 0)
+                throw new StreamingNotSupportedException("Comment outside of the root element");
+
+            if (lexicalHandler != null)
+                lexicalHandler.comment(ch, start, length);
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.xml.sax.SAXException;
+
+import digital.slovensko.autogram.util.DigestKeyedCache;
+
+/**
+ * Compiled XSD schemas shared across requests and batches. Compiled Schema is immutable and thread-safe, only
+ * Validators created from it have to stay per use.
+ */
+public class XsdSchemaCache {
+    private static final DigestKeyedCache<Schema> cache = new DigestKeyedCache<>(
+            Integer.parseInt(getProperty("cache.xsd.maxEntries")));
+
+    public static Schema getSchema(String xsdSchema) throws SAXException {
+        return cache.get(xsdSchema, XsdSchemaCache::compile);
+    }
+
+    public static DigestKeyedCache<Schema> getCache() {
+        return cache;
+    }
+
+    private static Schema compile(String xsdSchema) throws SAXException {
+        // SchemaFactory is not thread-safe, it is only needed on cache miss
+        var factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        return factory.newSchema(new StreamSource(new StringReader(xsdSchema)));
+    }
+}
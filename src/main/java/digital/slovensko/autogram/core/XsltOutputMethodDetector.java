@@ -0,0 +1,80 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import digital.slovensko.autogram.util.DigestKeyedCache;
+import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+
+/**
+ * Detects output MIME type of XSLT from its top-level xsl:output method. The stylesheet is streamed only until
+ * the declaration is found and results are memoized by stylesheet digest.
+ */
+public class XsltOutputMethodDetector {
+    private static final String XSL_NAMESPACE = "http://www.w3.org/1999/XSL/Transform";
+    private static final DigestKeyedCache<MimeType> cache = new DigestKeyedCache<>(
+            Integer.parseInt(getProperty("cache.xslt.maxEntries")));
+
+    /**
+     * @return HTML or TEXT MIME type, null if there is no transformation
+     */
+    public static MimeType getOutputMimeType(String transformation) throws XMLStreamException {
+        if (transformation == null)
+            return null;
+
+        return cache.get(transformation, XsltOutputMethodDetector::detect);
+    }
+
+    public static DigestKeyedCache<MimeType> getCache() {
+        return cache;
+    }
+
+    private static MimeType detect(String transformation) throws XMLStreamException {
+        var method = getOutputMethod(transformation);
+        if ("html".equals(method))
+            return MimeTypeEnum.HTML;
+
+        if ("text".equals(method))
+            return MimeTypeEnum.TEXT;
+
+        throw new RuntimeException("Unsupported transformation output method: " + method);
+    }
+
+    /**
+     * @return method attribute of the first top-level xsl:output, null if there is none
+     */
+    static String getOutputMethod(String transformation) throws XMLStreamException {
+        var factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        var reader = factory.createXMLStreamReader(new StringReader(transformation));
+        try {
+            var depth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        depth++;
+                        if (depth == 2 && XSL_NAMESPACE.equals(reader.getNamespaceURI())
+                                && "output".equals(reader.getLocalName()))
+                            return reader.getAttributeValue(null, "method");
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> depth--;
+                    default -> {
+                    }
+                }
+            }
+
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+}
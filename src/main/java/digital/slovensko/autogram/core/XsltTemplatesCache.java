@@ -0,0 +1,53 @@
+package digital.slovensko.autogram.core;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.io.StringReader;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import digital.slovensko.autogram.util.DigestKeyedCache;
+import digital.slovensko.autogram.util.TimingStats;
+
+/**
+ * Compiled XSLT stylesheets shared across visualizations. Templates are thread-safe, a Transformer has to be
+ * created from them for every transformation.
+ */
+public class XsltTemplatesCache {
+    private static final DigestKeyedCache<Templates> cache = new DigestKeyedCache<>(
+            Integer.parseInt(getProperty("cache.xslt.maxEntries")));
+    private static final TimingStats compileStats = new TimingStats();
+    private static final TimingStats transformStats = new TimingStats();
+
+    public static Templates getTemplates(String transformation) throws TransformerConfigurationException {
+        return cache.get(transformation, XsltTemplatesCache::compile);
+    }
+
+    public static DigestKeyedCache<Templates> getCache() {
+        return cache;
+    }
+
+    public static TimingStats getCompileStats() {
+        return compileStats;
+    }
+
+    /**
+     * Transformations are timed by their callers, compile time stays separate
+     */
+    public static TimingStats getTransformStats() {
+        return transformStats;
+    }
+
+    private static Templates compile(String transformation) throws TransformerConfigurationException {
+        var start = System.nanoTime();
+        try {
+            var transformerFactory = TransformerFactory.newInstance("net.sf.saxon.TransformerFactoryImpl", null);
+            return transformerFactory.newTemplates(new StreamSource(new StringReader(transformation)));
+        } finally {
+            compileStats.recordSince(start);
+        }
+    }
+}
@@ -45,6 +45,9 @@ public class AutogramException extends RuntimeException {
                     return new TokenNotRecognizedException();
                 } else if (cause.getMessage().equals("CKR_PIN_INCORRECT") || cause.getMessage().equals("CKR_FUNCTION_FAILED")) {
                     return new PINIncorrectException();
+                } else if (cause instanceof java.security.UnrecoverableKeyException) {
+                    // wrong password of a keystore file
+                    return new PINIncorrectException();
                 } else if (cause.getMessage().equals("CKR_PIN_LOCKED")) {
                     return new PINLockedException();
                 } else if (cause.getMessage().equals("Token has been removed")) {
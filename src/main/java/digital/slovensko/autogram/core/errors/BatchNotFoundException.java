@@ -0,0 +1,7 @@
+package digital.slovensko.autogram.core.errors;
+
+public class BatchNotFoundException extends AutogramException {
+    public BatchNotFoundException() {
+        super("Hromadné podpisovanie nebolo nájdené", "Hromadné podpisovanie s daným identifikátorom neexistuje", "Hromadné podpisovanie s daným identifikátorom neexistuje alebo už bolo dávno ukončené.");
+    }
+}
@@ -0,0 +1,7 @@
+package digital.slovensko.autogram.core.errors;
+
+public class BundleNotSupportedException extends AutogramException {
+    public BundleNotSupportedException(String description) {
+        super("Nastala chyba", "Dokumenty nie je možné podpísať spolu", description);
+    }
+}
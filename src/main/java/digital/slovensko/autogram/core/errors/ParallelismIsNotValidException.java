@@ -0,0 +1,7 @@
+package digital.slovensko.autogram.core.errors;
+
+public class ParallelismIsNotValidException extends AutogramException {
+    public ParallelismIsNotValidException(String parallelism) {
+        super("Nastala chyba", "Zadaný počet paralelných vlákien nie je platný", "Zadali ste počet paralelných vlákien \"" + parallelism + "\", ktorý nie je kladné celé číslo");
+    }
+}
@@ -0,0 +1,7 @@
+package digital.slovensko.autogram.core.errors;
+
+public class SigningKeyClosedException extends AutogramException {
+    public SigningKeyClosedException() {
+        super("Nastala chyba", "Podpisovanie týmto certifikátom bolo ukončené", "Certifikát bol medzičasom zmenený alebo bolo podpisovanie ukončené. Vyberte certifikát a skúste to znova.");
+    }
+}
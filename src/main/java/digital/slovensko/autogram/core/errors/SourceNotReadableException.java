@@ -0,0 +1,7 @@
+package digital.slovensko.autogram.core.errors;
+
+public class SourceNotReadableException extends AutogramException {
+    public SourceNotReadableException(Throwable e) {
+        super("Nastala chyba", "Zdrojový adresár sa nepodarilo prečítať", "Pri prechádzaní zdrojového adresára nastala chyba: " + e.getMessage(), e);
+    }
+}
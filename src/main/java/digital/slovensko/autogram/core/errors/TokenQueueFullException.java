@@ -0,0 +1,17 @@
+package digital.slovensko.autogram.core.errors;
+
+public class TokenQueueFullException extends AutogramException {
+    private final int retryAfterSeconds;
+
+    public TokenQueueFullException(int retryAfterSeconds) {
+        super("Nastala chyba", "Príliš veľa dokumentov čaká na podpísanie", "Karta alebo token práve podpisuje veľké množstvo dokumentov. Skúste to znova o chvíľu.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return estimated time until the waiting documents are signed
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
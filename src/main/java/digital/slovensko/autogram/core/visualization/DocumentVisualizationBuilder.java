@@ -1,8 +1,6 @@
 package digital.slovensko.autogram.core.visualization;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -10,22 +8,24 @@ import java.util.Properties;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import eu.europa.esig.dss.model.DSSDocument;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 import digital.slovensko.autogram.core.AutogramMimeType;
 import static digital.slovensko.autogram.core.AutogramMimeType.*;
 import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.SigningParameters;
+import digital.slovensko.autogram.core.XsltOutputMethodDetector;
+import digital.slovensko.autogram.core.XsltTemplatesCache;
 import digital.slovensko.autogram.core.errors.AutogramException;
 import digital.slovensko.autogram.util.AsicContainerUtils;
 import eu.europa.esig.dss.enumerations.MimeType;
@@ -120,24 +120,13 @@ public class DocumentVisualizationBuilder {
 
     public static MimeType getTransformationOutputMimeType(String transformation)
         throws SAXException, IOException, ParserConfigurationException {
-        if (transformation == null)
-            return null;
-
-        var builderFactory = DocumentBuilderFactory.newInstance();
-        builderFactory.setNamespaceAware(true);
-        var document = builderFactory.newDocumentBuilder()
-            .parse(new InputSource(new StringReader(transformation)));
-        var elem = document.getDocumentElement();
-        var outputElements = elem.getElementsByTagNameNS("http://www.w3.org/1999/XSL/Transform", "output");
-        var method = outputElements.item(0).getAttributes().getNamedItem("method").getNodeValue();
-
-        if (method.equals("html"))
-            return MimeTypeEnum.HTML;
-
-        if (method.equals("text"))
-            return MimeTypeEnum.TEXT;
-
-        throw new RuntimeException("Unsupported transformation output method: " + method);
+        try {
+            return XsltOutputMethodDetector.getOutputMimeType(transformation);
+        } catch (XMLStreamException e) {
+            var location = e.getLocation();
+            throw new SAXParseException(e.getMessage(), null, null,
+                location != null ? location.getLineNumber() : -1, location != null ? location.getColumnNumber() : -1, e);
+        }
     }
 
     /**
@@ -166,16 +155,14 @@ public class DocumentVisualizationBuilder {
 
             var outputTarget = new StreamResult(new StringWriter());
 
-            // var transformerFactory = TransformerFactory.newDefaultInstance();
-
-            var transformerFactory = TransformerFactory.newInstance("net.sf.saxon.TransformerFactoryImpl", null);
-
-            var transformer = transformerFactory.newTransformer(new StreamSource(
-                new ByteArrayInputStream(getTransformation().getBytes(encoding))));
+            var transformer = XsltTemplatesCache.getTemplates(getTransformation()).newTransformer();
             var outputProperties = new Properties();
             outputProperties.setProperty(OutputKeys.ENCODING, encoding.displayName());
             transformer.setOutputProperties(outputProperties);
+
+            var start = System.nanoTime();
             transformer.transform(xmlSource, outputTarget);
+            XsltTemplatesCache.getTransformStats().recordSince(start);
 
             return outputTarget.getWriter().toString().trim();
         } catch (Exception transformationException) {
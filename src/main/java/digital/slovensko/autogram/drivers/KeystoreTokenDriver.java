@@ -0,0 +1,71 @@
+package digital.slovensko.autogram.drivers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.KeyStore;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import eu.europa.esig.dss.token.KeyStoreSignatureTokenConnection;
+
+/**
+ * PKCS#12 or JKS keystore file, meant for unattended electronic seals on a server.
+ *
+ * There is no card behind it, the private key is used in memory and signing is thread-safe, so a key may sign on
+ * every core at once. The PIN can be configured up front, then no password is asked for.
+ */
+public class KeystoreTokenDriver extends TokenDriver {
+    public static final String PATH_ENVIRONMENT_VARIABLE = "AUTOGRAM_KEYSTORE_PATH";
+    public static final String PIN_ENVIRONMENT_VARIABLE = "AUTOGRAM_KEYSTORE_PIN";
+
+    private final char[] pin;
+
+    /**
+     * @param pin keystore password, null to ask for it
+     */
+    public KeystoreTokenDriver(String name, Path path, char[] pin, String shortname) {
+        super(name, path, pin == null, shortname);
+        this.pin = pin;
+    }
+
+    /**
+     * Keystore from the environment, the path may also come from user settings
+     *
+     * @return null when no keystore is configured
+     */
+    public static KeystoreTokenDriver fromEnvironment(String settingsPath, String shortname) {
+        var path = System.getenv(PATH_ENVIRONMENT_VARIABLE);
+        if (path == null || path.isBlank())
+            path = settingsPath;
+
+        if (path == null || path.isBlank())
+            return null;
+
+        var pin = System.getenv(PIN_ENVIRONMENT_VARIABLE);
+        return new KeystoreTokenDriver("Súbor s certifikátom (" + Path.of(path).getFileName() + ")", Path.of(path),
+                pin == null ? null : pin.toCharArray(), shortname);
+    }
+
+    @Override
+    public AbstractKeyStoreTokenConnection createTokenWithPassword(Integer slotId, char[] password) {
+        var keystorePassword = pin != null ? pin : password;
+        try {
+            return new KeyStoreSignatureTokenConnection(getPath().toFile(), getKeystoreType(),
+                    new KeyStore.PasswordProtection(keystorePassword == null ? new char[0] : keystorePassword));
+        } catch (IOException e) {
+            throw new DSSException("Unable to read keystore " + getPath(), e);
+        }
+    }
+
+    @Override
+    public int getSigningConcurrency() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Both keystore types read the other format as well, the extension only picks the preferred one
+     */
+    String getKeystoreType() {
+        return getPath().getFileName().toString().toLowerCase().endsWith(".jks") ? "JKS" : "PKCS12";
+    }
+}
@@ -33,6 +33,13 @@ public abstract class TokenDriver {
 
     public abstract AbstractKeyStoreTokenConnection createTokenWithPassword(Integer slotId, char[] password);
 
+    /**
+     * @return number of signatures a key of this driver can compute at once, cards and tokens handle only one
+     */
+    public int getSigningConcurrency() {
+        return 1;
+    }
+
     public boolean needsPassword() {
         return needsPassword;
     }
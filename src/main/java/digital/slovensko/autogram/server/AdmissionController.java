@@ -0,0 +1,120 @@
+package digital.slovensko.autogram.server;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import digital.slovensko.autogram.server.errors.ServiceOverloadedException;
+import digital.slovensko.autogram.server.errors.TooManyRequestsException;
+
+/**
+ * Bounds the number of jobs (and bytes of their documents) held by the server at once.
+ *
+ * A job is admitted when its request arrives and holds its permit until it is responded to. Requests over the
+ * global limits are rejected with 503, requests over the per-origin limit with 429, both with Retry-After.
+ * Limit of 0 disables the check.
+ */
+public class AdmissionController {
+    private final int maxInFlightJobs;
+    private final long maxQueuedBytes;
+    private final int maxJobsPerOrigin;
+    private final int retryAfterSeconds;
+
+    private int inFlightJobs = 0;
+    private long queuedBytes = 0;
+    private final Map<String, Integer> jobsPerOrigin = new HashMap<>();
+
+    public AdmissionController(int maxInFlightJobs, long maxQueuedBytes, int maxJobsPerOrigin, int retryAfterSeconds) {
+        this.maxInFlightJobs = maxInFlightJobs;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.maxJobsPerOrigin = maxJobsPerOrigin;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static AdmissionController fromConfiguration() {
+        return new AdmissionController(
+                Integer.parseInt(getProperty("server.admission.maxInFlightJobs")),
+                Long.parseLong(getProperty("server.admission.maxQueuedBytes")),
+                Integer.parseInt(getProperty("server.admission.maxJobsPerOrigin")),
+                Integer.parseInt(getProperty("server.admission.retryAfterSeconds")));
+    }
+
+    /**
+     * @param origin - client identification, e.g. Origin header or remote address
+     * @param bytes - expected size of the job payload, can be raised later with {@link Permit#ensureBytes(long)}
+     */
+    public synchronized Permit admit(String origin, long bytes) {
+        if (maxInFlightJobs > 0 && inFlightJobs >= maxInFlightJobs)
+            throw new ServiceOverloadedException("Too many documents are being signed", retryAfterSeconds);
+
+        checkBytes(bytes);
+
+        var originJobs = jobsPerOrigin.getOrDefault(origin, 0);
+        if (maxJobsPerOrigin > 0 && originJobs >= maxJobsPerOrigin)
+            throw new TooManyRequestsException("Too many documents are being signed for " + origin, retryAfterSeconds);
+
+        inFlightJobs++;
+        queuedBytes += bytes;
+        jobsPerOrigin.put(origin, originJobs + 1);
+
+        return new Permit(origin, bytes);
+    }
+
+    public synchronized int getInFlightJobs() {
+        return inFlightJobs;
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * A single job over the limit is still admitted when nothing else is queued, otherwise it could never be signed
+     */
+    private void checkBytes(long additionalBytes) {
+        if (maxQueuedBytes > 0 && queuedBytes > 0 && queuedBytes + additionalBytes > maxQueuedBytes)
+            throw new ServiceOverloadedException("Too much document data is being signed", retryAfterSeconds);
+    }
+
+    private synchronized void reserve(long additionalBytes) {
+        checkBytes(additionalBytes);
+        queuedBytes += additionalBytes;
+    }
+
+    private synchronized void release(String origin, long bytes) {
+        inFlightJobs--;
+        queuedBytes -= bytes;
+        jobsPerOrigin.computeIfPresent(origin, (key, jobs) -> jobs > 1 ? jobs - 1 : null);
+    }
+
+    public class Permit {
+        private final String origin;
+        private long bytes;
+        private boolean released = false;
+
+        private Permit(String origin, long bytes) {
+            this.origin = origin;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Raises the reservation to at least totalBytes, e.g. once the real payload size is known
+         */
+        public synchronized void ensureBytes(long totalBytes) {
+            if (released || totalBytes <= bytes)
+                return;
+
+            reserve(totalBytes - bytes);
+            bytes = totalBytes;
+        }
+
+        public synchronized void release() {
+            if (released)
+                return;
+
+            released = true;
+            AdmissionController.this.release(origin, bytes);
+        }
+    }
+}
@@ -18,11 +18,23 @@ import com.sun.net.httpserver.HttpsParameters;
 import com.sun.net.httpserver.HttpsServer;
 
 import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.ExecutorRegistry;
+import digital.slovensko.autogram.server.filters.AutogramCompressionFilter;
 import digital.slovensko.autogram.server.filters.AutogramCorsFilter;
+import digital.slovensko.autogram.util.SpooledContent;
 
 public class AutogramServer {
     private final HttpServer server;
     private final Autogram autogram;
+    private final AdmissionController admissionController = AdmissionController.fromConfiguration();
+
+    /**
+     * Runs handlers on the dedicated HTTP pool, so requests blocked on signing do not starve other endpoints or
+     * background work
+     */
+    public AutogramServer(Autogram autogram, String hostname, int port, boolean isHttps) {
+        this(autogram, hostname, port, isHttps, ExecutorRegistry.getInstance().get(ExecutorRegistry.Pool.HTTP));
+    }
 
     public AutogramServer(Autogram autogram, String hostname, int port, boolean isHttps, ExecutorService executorService) {
         this.autogram = autogram;
@@ -39,12 +51,17 @@ public class AutogramServer {
         server.createContext("/docs", new DocumentationEndpoint());
 
         // Sign
-        server.createContext("/sign", new SignEndpoint(autogram)).getFilters()
-                .add(new AutogramCorsFilter("POST"));
+        var signContext = server.createContext("/sign", new SignEndpoint(autogram, admissionController));
+        signContext.getFilters().add(new AutogramCorsFilter("POST"));
+        signContext.getFilters().add(new AutogramCompressionFilter());
 
         // Batch
-        server.createContext("/batch", new BatchEndpoint(autogram)).getFilters()
-                .add(new AutogramCorsFilter(List.of("POST", "DELETE")));
+        var batchContext = server.createContext("/batch", new BatchEndpoint(autogram, admissionController));
+        batchContext.getFilters().add(new AutogramCorsFilter(List.of("GET", "POST", "DELETE")));
+        batchContext.getFilters().add(new AutogramCompressionFilter());
+
+        // Spooled request bodies left behind by a crashed instance
+        ExecutorRegistry.getInstance().execute(ExecutorRegistry.Pool.WORK, SpooledContent::deleteStaleFiles);
 
         // Start server
         server.start();
@@ -5,6 +5,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.server.dto.BatchEndRequestBody;
+import digital.slovensko.autogram.server.dto.BatchProgressResponseBody;
 import digital.slovensko.autogram.server.dto.BatchStartRequestBody;
 import digital.slovensko.autogram.server.dto.ErrorResponse;
 import digital.slovensko.autogram.server.errors.MalformedBodyException;
@@ -13,9 +14,11 @@ import java.io.IOException;
 
 public class BatchEndpoint implements HttpHandler {
     private final Autogram autogram;
+    private final AdmissionController admissionController;
 
-    public BatchEndpoint(Autogram autogram) {
+    public BatchEndpoint(Autogram autogram, AdmissionController admissionController) {
         this.autogram = autogram;
+        this.admissionController = admissionController;
     }
 
     @Override
@@ -23,11 +26,17 @@ public class BatchEndpoint implements HttpHandler {
         var requestMethod = exchange.getRequestMethod();
         try {
             if (requestMethod.equalsIgnoreCase("POST")) {
-                // Start batch
+                // Start batch, only rejected when saturated - the batch itself holds no document data
+                admissionController.admit(EndpointUtils.getOrigin(exchange), 0).release();
                 var body = EndpointUtils.loadFromJsonExchange(exchange,
                         BatchStartRequestBody.class);
                 autogram.batchStart(body.getTotalNumberOfDocuments(),
                         new BatchServerResponder(exchange));
+            } else if (requestMethod.equalsIgnoreCase("GET") && getBatchIdFromPath(exchange) != null) {
+                // Batch progress, for polling instead of holding connections open
+                var batchId = getBatchIdFromPath(exchange);
+                var batch = autogram.getBatchForProgress(batchId);
+                EndpointUtils.respondWith(BatchProgressResponseBody.buildFromBatch(batchId, batch), exchange);
             } else if (requestMethod.equalsIgnoreCase("DELETE")) {
                 // End batch
                 var body = EndpointUtils.loadFromJsonExchange(exchange,
@@ -48,4 +57,15 @@ public class BatchEndpoint implements HttpHandler {
             EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
         }
     }
+
+    /**
+     * @return batch ID from /batch/{batchId} or null for /batch
+     */
+    private static String getBatchIdFromPath(HttpExchange exchange) {
+        var path = exchange.getRequestURI().getPath();
+        var contextPath = exchange.getHttpContext().getPath();
+        var batchId = path.substring(Math.min(contextPath.length(), path.length())).replaceAll("^/+|/+$", "");
+
+        return batchId.isEmpty() ? null : batchId;
+    }
 }
@@ -0,0 +1,231 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.BufferedWriter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Passes a JSON request body through while diverting the string value of {@code document.content}
+ * (unescaped, UTF-8 encoded) into the given output stream.
+ *
+ * Gson then only parses the small envelope in which the content is replaced by an empty string, so the
+ * document itself is never held on the heap as a whole.
+ */
+public class DocumentContentExtractingReader extends FilterReader {
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private static class Frame {
+        private final boolean isObject;
+        private boolean expectsKey;
+        private String key = null;
+
+        private Frame(boolean isObject) {
+            this.isObject = isObject;
+            this.expectsKey = isObject;
+        }
+    }
+
+    private final Writer contentWriter;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final StringBuilder key = new StringBuilder();
+    private char[] input = new char[0];
+
+    private boolean inString = false;
+    private boolean isKeyString = false;
+    private boolean escaped = false;
+    private boolean diverting = false;
+    private int unicodeDigitsRemaining = 0;
+    private int unicodeValue = 0;
+
+    private boolean anyCharRead = false;
+    private boolean contentFound = false;
+
+    public DocumentContentExtractingReader(Reader in, OutputStream contentSink) {
+        super(in);
+        this.contentWriter = new BufferedWriter(new OutputStreamWriter(contentSink, StandardCharsets.UTF_8));
+    }
+
+    public boolean isEmpty() {
+        return !anyCharRead;
+    }
+
+    public boolean isDocumentContentFound() {
+        return contentFound;
+    }
+
+    @Override
+    public int read() throws IOException {
+        var c = new char[1];
+        return read(c, 0, 1) == -1 ? -1 : c[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        if (input.length < len)
+            input = new char[len];
+
+        while (true) {
+            var n = in.read(input, 0, len);
+            if (n == -1) {
+                if (diverting)
+                    throw new MalformedJsonException("Unterminated document content");
+
+                return -1;
+            }
+
+            anyCharRead = true;
+            var written = 0;
+            for (int i = 0; i < n; i++) {
+                var c = input[i];
+                if (diverting) {
+                    if (divert(c))
+                        cbuf[off + written++] = c;
+                } else if (accept(c)) {
+                    cbuf[off + written++] = c;
+                }
+            }
+
+            if (written > 0)
+                return written;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("Skip not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Tracks JSON structure, always passes the character through
+     */
+    private boolean accept(char c) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+                appendToKey(c);
+            } else if (c == '\\') {
+                escaped = true;
+                appendToKey(c);
+            } else if (c == '"') {
+                inString = false;
+                if (isKeyString)
+                    frames.peek().key = key.toString();
+            } else {
+                appendToKey(c);
+            }
+
+            return true;
+        }
+
+        var top = frames.peek();
+        switch (c) {
+            case '{' -> frames.push(new Frame(true));
+            case '[' -> frames.push(new Frame(false));
+            case '}', ']' -> frames.poll();
+            case ':' -> {
+                if (top != null && top.isObject)
+                    top.expectsKey = false;
+            }
+            case ',' -> {
+                if (top != null && top.isObject)
+                    top.expectsKey = true;
+            }
+            case '"' -> {
+                inString = true;
+                escaped = false;
+                isKeyString = top != null && top.isObject && top.expectsKey;
+                key.setLength(0);
+                if (!isKeyString && !contentFound && isAtDocumentContent()) {
+                    diverting = true;
+                    contentFound = true;
+                }
+            }
+            default -> {
+            }
+        }
+
+        return true;
+    }
+
+    private void appendToKey(char c) {
+        if (isKeyString && key.length() < MAX_KEY_LENGTH)
+            key.append(c);
+    }
+
+    private boolean isAtDocumentContent() {
+        if (frames.size() != 2)
+            return false;
+
+        var root = frames.peekLast();
+        var document = frames.peek();
+        return root.isObject && "document".equals(root.key) && document.isObject && "content".equals(document.key);
+    }
+
+    /**
+     * Decodes the content string into the sink, passes through only the closing quote
+     */
+    private boolean divert(char c) throws IOException {
+        if (unicodeDigitsRemaining > 0) {
+            var digit = Character.digit(c, 16);
+            if (digit == -1)
+                throw new MalformedJsonException("Invalid unicode escape in document content");
+
+            unicodeValue = unicodeValue * 16 + digit;
+            if (--unicodeDigitsRemaining == 0)
+                contentWriter.write(unicodeValue);
+
+            return false;
+        }
+
+        if (escaped) {
+            escaped = false;
+            switch (c) {
+                case 'u' -> {
+                    unicodeDigitsRemaining = 4;
+                    unicodeValue = 0;
+                }
+                case '"', '\\', '/' -> contentWriter.write(c);
+                case 'b' -> contentWriter.write('\b');
+                case 'f' -> contentWriter.write('\f');
+                case 'n' -> contentWriter.write('\n');
+                case 'r' -> contentWriter.write('\r');
+                case 't' -> contentWriter.write('\t');
+                default -> throw new MalformedJsonException("Invalid escape sequence in document content");
+            }
+
+            return false;
+        }
+
+        if (c == '\\') {
+            escaped = true;
+            return false;
+        }
+
+        if (c == '"') {
+            diverting = false;
+            inString = false;
+            contentWriter.flush();
+            return true;
+        }
+
+        contentWriter.write(c);
+        return false;
+    }
+}
@@ -3,15 +3,34 @@ package digital.slovensko.autogram.server;
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.dto.SignRequestBody;
 import digital.slovensko.autogram.server.errors.EmptyBodyException;
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.util.SpooledContent;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
 
 public class EndpointUtils {
     private final static Gson gson = new Gson();
+    private final static int CHUNK_SIZE = 48 * 1024; // multiple of 3 so chunks encode without Base64 padding
 
     public static void respondWithError(ErrorResponse error, HttpExchange exchange) {
         try {
             exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (error.getRetryAfterSeconds() != null)
+                exchange.getResponseHeaders().add("Retry-After", error.getRetryAfterSeconds().toString());
+
             exchange.sendResponseHeaders(error.getStatusCode(), 0);
             if (error.getStatusCode() != 204)
                 exchange.getResponseBody().write(gson.toJson(error.getBody()).getBytes());
@@ -32,6 +51,113 @@ public class EndpointUtils {
         }
     }
 
+    /**
+     * Responds with JSON object having the document Base64-encoded in "content" followed by the other (non-null)
+     * fields of response. The document is encoded straight into the response body chunk by chunk, so it is never
+     * held encoded in memory.
+     */
+    public static void respondWithBase64Document(DSSDocument document, Object response, HttpExchange exchange)
+            throws IOException {
+        var responseJson = gson.toJson(response);
+        var prefix = "{\"content\":\"".getBytes(StandardCharsets.UTF_8);
+        var suffix = ("\"" + (responseJson.length() > 2 ? "," + responseJson.substring(1) : "}"))
+                .getBytes(StandardCharsets.UTF_8);
+
+        var documentSize = getDocumentSize(document);
+        var contentLength = documentSize < 0 ? 0 : prefix.length + base64Length(documentSize) + suffix.length;
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, contentLength);
+
+        var body = exchange.getResponseBody();
+        body.write(prefix);
+        try (var in = document.openStream(); var encoder = Base64.getEncoder().wrap(
+                new NonClosingOutputStream(new BufferedOutputStream(body, CHUNK_SIZE)))) {
+            var chunk = new byte[CHUNK_SIZE];
+            int n;
+            while ((n = in.readNBytes(chunk, 0, chunk.length)) > 0)
+                encoder.write(chunk, 0, n);
+        }
+        body.write(suffix);
+        body.close();
+    }
+
+    /**
+     * Responds with the raw document bytes, additional headers are percent-encoded (UTF-8) so that non-ASCII
+     * distinguished names survive the HTTP header encoding
+     */
+    public static void respondWithDocument(DSSDocument document, Map<String, String> headers, HttpExchange exchange)
+            throws IOException {
+        var mimeType = document.getMimeType() != null ? document.getMimeType().getMimeTypeString()
+                : "application/octet-stream";
+        exchange.getResponseHeaders().add("Content-Type", mimeType);
+        if (document.getName() != null)
+            exchange.getResponseHeaders().add("Content-Disposition",
+                    "attachment; filename*=UTF-8''" + percentEncode(document.getName()));
+
+        headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, percentEncode(value)));
+
+        var documentSize = getDocumentSize(document);
+        exchange.sendResponseHeaders(200, documentSize < 0 ? 0 : documentSize);
+
+        var body = exchange.getResponseBody();
+        try (var in = document.openStream()) {
+            in.transferTo(body);
+        }
+        body.close();
+    }
+
+    private static String percentEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * Is the response expected as raw binary? Decided by the Accept header, defaults to binary for binary requests
+     */
+    public static boolean acceptsBinaryResponse(HttpExchange exchange, boolean isBinaryRequest) {
+        var accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept == null)
+            return isBinaryRequest;
+
+        if (accept.contains("application/octet-stream"))
+            return true;
+
+        if (accept.contains("application/json"))
+            return false;
+
+        return isBinaryRequest;
+    }
+
+    private static long getDocumentSize(DSSDocument document) {
+        if (document instanceof InMemoryDocument inMemoryDocument)
+            return inMemoryDocument.getBytes().length;
+
+        if (document instanceof FileDocument fileDocument)
+            return fileDocument.getFile().length();
+
+        return -1;
+    }
+
+    private static long base64Length(long size) {
+        return 4 * ((size + 2) / 3);
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     public static <T> T loadFromJsonExchange(HttpExchange exchange, Class<T> classOfT) throws IOException {
         var content = new String(exchange.getRequestBody().readAllBytes());
         if (content == null || content.isEmpty())
@@ -41,4 +167,111 @@ public class EndpointUtils {
             throw new IOException("Failed to parse JSON body");
         return ret;
     }
+
+    /**
+     * Parses sign request without materializing the document content - it is streamed into a spooled content
+     * attached to the returned body instead
+     */
+    public static SignRequestBody loadSignRequestFromJsonExchange(HttpExchange exchange) throws IOException {
+        var content = new SpooledContent();
+        var reader = new DocumentContentExtractingReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), content);
+
+        try {
+            var ret = gson.fromJson(reader, SignRequestBody.class);
+            content.close();
+            if (ret == null) {
+                if (reader.isEmpty())
+                    throw new EmptyBodyException("Empty body");
+
+                throw new IOException("Failed to parse JSON body");
+            }
+
+            if (reader.isDocumentContentFound())
+                ret.setSpooledDocumentContent(content);
+            else
+                content.release();
+
+            return ret;
+        } catch (IOException | RuntimeException e) {
+            content.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Origin header of browser requests or remote address of other clients
+     */
+    public static String getOrigin(HttpExchange exchange) {
+        var origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null)
+            return origin;
+
+        var address = exchange.getRemoteAddress();
+        return address == null || address.getAddress() == null ? "unknown" : address.getAddress().getHostAddress();
+    }
+
+    /**
+     * @return declared request body length or 0 if unknown (chunked)
+     */
+    public static long getRequestContentLength(HttpExchange exchange) {
+        try {
+            var contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            return contentLength == null ? 0 : Math.max(0, Long.parseLong(contentLength));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static boolean isMultipartExchange(HttpExchange exchange) {
+        return MultipartReader.getBoundary(exchange.getRequestHeaders().getFirst("Content-Type")) != null;
+    }
+
+    /**
+     * Parses multipart/form-data sign request - the "body" part holds the JSON request without document content
+     * and the "document" part the raw document bytes, which are spooled and attached to the returned body
+     */
+    public static SignRequestBody loadSignRequestFromMultipartExchange(HttpExchange exchange) throws IOException {
+        var boundary = MultipartReader.getBoundary(exchange.getRequestHeaders().getFirst("Content-Type"));
+        var reader = new MultipartReader(exchange.getRequestBody(), boundary);
+
+        SignRequestBody ret = null;
+        SpooledContent content = null;
+        String filename = null;
+        String mimeType = null;
+        try {
+            MultipartReader.Part part;
+            while ((part = reader.nextPart()) != null) {
+                if ("body".equals(part.name()) && ret == null) {
+                    ret = gson.fromJson(new InputStreamReader(part.content(), StandardCharsets.UTF_8),
+                            SignRequestBody.class);
+                    if (ret == null)
+                        throw new EmptyBodyException("Empty body part");
+
+                } else if ("document".equals(part.name()) && content == null) {
+                    content = new SpooledContent();
+                    try (var spool = content) {
+                        part.content().transferTo(spool);
+                    }
+                    filename = part.filename();
+                    mimeType = part.contentType();
+                }
+            }
+
+            if (ret == null)
+                throw new MalformedBodyException("Missing multipart part", "Part \"body\" is required");
+
+            if (content == null)
+                throw new MalformedBodyException("Missing multipart part", "Part \"document\" is required");
+
+            ret.setSpooledDocumentContent(content, filename, mimeType);
+            return ret;
+
+        } catch (IOException | RuntimeException e) {
+            if (content != null)
+                content.release();
+
+            throw e;
+        }
+    }
 }
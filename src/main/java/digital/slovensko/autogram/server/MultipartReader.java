@@ -0,0 +1,267 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal streaming reader of multipart/form-data request bodies (RFC 7578).
+ *
+ * Parts are read one after another, the content of each part is exposed as a stream ending at the next boundary,
+ * so large binary parts never have to be held in memory.
+ */
+public class MultipartReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADERS_LENGTH = 8 * 1024;
+
+    public record Part(String name, String filename, String contentType, InputStream content) {
+    }
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean finished = false;
+    private PartStream currentPart = null;
+
+    public MultipartReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, delimiter.length * 2)];
+    }
+
+    /**
+     * @return boundary parameter of multipart/form-data content type or null if the content type is not multipart
+     */
+    public static String getBoundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data"))
+            return null;
+
+        var boundary = getParameter(contentType, "boundary");
+        return boundary == null || boundary.isEmpty() ? null : boundary;
+    }
+
+    /**
+     * @return next part or null when the closing boundary was reached; unread content of the previous part is skipped
+     */
+    public Part nextPart() throws IOException {
+        if (finished)
+            return null;
+
+        if (currentPart == null) {
+            skipPreamble();
+        } else {
+            currentPart.skipRemaining();
+        }
+
+        if (finished)
+            return null;
+
+        var headers = readHeaders();
+        var disposition = headers.get("content-disposition");
+        if (disposition == null)
+            throw new MalformedBodyException("Multipart part is missing Content-Disposition header", "");
+
+        currentPart = new PartStream();
+        return new Part(getParameter(disposition, "name"), getParameter(disposition, "filename"),
+                headers.get("content-type"), currentPart);
+    }
+
+    private void skipPreamble() throws IOException {
+        // the first boundary does not have to be preceded by CRLF
+        fill(delimiter.length - 2);
+        if (startsWith(delimiter, 2)) {
+            pos += delimiter.length - 2;
+        } else {
+            new PartStream().skipRemaining();
+            return;
+        }
+
+        afterBoundary();
+    }
+
+    /**
+     * Consumes the transport padding after a boundary and detects the closing boundary
+     */
+    private void afterBoundary() throws IOException {
+        fill(2);
+        if (limit - pos >= 2 && buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            return;
+        }
+
+        while (true) {
+            if (!fill(1))
+                throw new MalformedBodyException("Unexpected end of multipart body", "");
+
+            var b = buffer[pos++];
+            if (b == '\n')
+                return;
+
+            if (b != '\r' && b != ' ' && b != '\t')
+                throw new MalformedBodyException("Malformed multipart boundary", "");
+        }
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        var headers = new HashMap<String, String>();
+        var line = new StringBuilder();
+        var total = 0;
+        while (true) {
+            if (!fill(1))
+                throw new MalformedBodyException("Unexpected end of multipart body", "");
+
+            var b = buffer[pos++];
+            if (++total > MAX_HEADERS_LENGTH)
+                throw new MalformedBodyException("Multipart part headers are too long", "");
+
+            if (b == '\r')
+                continue;
+
+            if (b != '\n') {
+                line.append((char) (b & 0xff));
+                continue;
+            }
+
+            if (line.length() == 0)
+                return headers;
+
+            var colon = line.indexOf(":");
+            if (colon > 0) {
+                var value = new String(line.substring(colon + 1).trim().getBytes(StandardCharsets.ISO_8859_1),
+                        StandardCharsets.UTF_8);
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), value);
+            }
+
+            line.setLength(0);
+        }
+    }
+
+    private static String getParameter(String headerValue, String parameter) {
+        for (var token : headerValue.split(";")) {
+            var eq = token.indexOf('=');
+            if (eq < 0 || !token.substring(0, eq).trim().equalsIgnoreCase(parameter))
+                continue;
+
+            var value = token.substring(eq + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+                value = value.substring(1, value.length() - 1);
+
+            return value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Ensures at least n bytes are buffered unless the stream ended
+     *
+     * @return false if no more bytes are available
+     */
+    private boolean fill(int n) throws IOException {
+        if (limit - pos >= n)
+            return true;
+
+        System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+
+        while (limit < n) {
+            var read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1)
+                break;
+
+            limit += read;
+        }
+
+        return limit > pos;
+    }
+
+    private boolean startsWith(byte[] bytes, int from) {
+        if (limit - pos < bytes.length - from)
+            return false;
+
+        for (int i = from; i < bytes.length; i++)
+            if (buffer[pos + i - from] != bytes[i])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * @return offset of the delimiter in buffered data or the length of data safe to return if it is not there
+     */
+    private int findDelimiter() {
+        var end = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= end; i++) {
+            for (int j = 0; j < delimiter.length; j++)
+                if (buffer[i + j] != delimiter[j])
+                    continue outer;
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    private class PartStream extends InputStream {
+        private boolean ended = false;
+
+        @Override
+        public int read() throws IOException {
+            var b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended)
+                return -1;
+
+            if (len == 0)
+                return 0;
+
+            fill(delimiter.length);
+            var found = findDelimiter();
+            int available;
+            if (found >= 0) {
+                available = found - pos;
+            } else if (limit - pos < delimiter.length) {
+                throw new MalformedBodyException("Unexpected end of multipart body", "");
+            } else {
+                // keep a possible delimiter prefix at the end of the buffer
+                available = limit - pos - delimiter.length + 1;
+            }
+
+            if (available == 0) {
+                pos += delimiter.length;
+                ended = true;
+                afterBoundary();
+                return -1;
+            }
+
+            var n = Math.min(available, len);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        private void skipRemaining() throws IOException {
+            var skipBuffer = new byte[BUFFER_SIZE];
+            while (read(skipBuffer, 0, skipBuffer.length) != -1) {
+            }
+        }
+
+        @Override
+        public void close() {
+            // the underlying request body is closed by the exchange
+        }
+    }
+}
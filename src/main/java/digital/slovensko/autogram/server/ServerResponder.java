@@ -8,13 +8,32 @@ import digital.slovensko.autogram.server.dto.ErrorResponse;
 import digital.slovensko.autogram.server.dto.SignResponse;
 
 import java.io.IOException;
-import java.util.Base64;
+import java.util.Map;
 
 public class ServerResponder extends Responder {
+    public static final String SIGNED_BY_HEADER = "X-Autogram-Signed-By";
+    public static final String ISSUED_BY_HEADER = "X-Autogram-Issued-By";
+
     private final HttpExchange exchange;
+    private final Runnable onResponded;
+    private final boolean binaryResponse;
 
     public ServerResponder(HttpExchange exchange) {
+        this(exchange, () -> {});
+    }
+
+    public ServerResponder(HttpExchange exchange, Runnable onResponded) {
+        this(exchange, onResponded, false);
+    }
+
+    /**
+     * @param onResponded - called after the response was sent, e.g. to free request resources
+     * @param binaryResponse - respond with the raw signed document instead of JSON with Base64-encoded content
+     */
+    public ServerResponder(HttpExchange exchange, Runnable onResponded, boolean binaryResponse) {
         this.exchange = exchange;
+        this.onResponded = onResponded;
+        this.binaryResponse = binaryResponse;
     }
 
     @Override
@@ -23,15 +42,25 @@ public class ServerResponder extends Responder {
         var issuer = signedDocument.getCertificate().getIssuer().getPrincipal().toString();
 
         try {
-            var b64document = Base64.getEncoder().encodeToString(signedDocument.getDocument().openStream().readAllBytes());
-            EndpointUtils.respondWith(new SignResponse(b64document, signer, issuer), exchange);
+            if (binaryResponse)
+                EndpointUtils.respondWithDocument(signedDocument.getDocument(),
+                        Map.of(SIGNED_BY_HEADER, signer, ISSUED_BY_HEADER, issuer), exchange);
+            else
+                EndpointUtils.respondWithBase64Document(signedDocument.getDocument(),
+                        new SignResponse(null, signer, issuer), exchange);
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            onResponded.run();
         }
     }
 
     @Override
     public void onDocumentSignFailed(AutogramException error) {
-        EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange);
+        try {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange);
+        } finally {
+            onResponded.run();
+        }
     }
 }
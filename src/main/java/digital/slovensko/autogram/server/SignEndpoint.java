@@ -21,15 +21,34 @@ import org.xml.sax.SAXException;
 
 public class SignEndpoint implements HttpHandler {
     private final Autogram autogram;
+    private final AdmissionController admissionController;
 
-    public SignEndpoint(Autogram autogram) {
+    public SignEndpoint(Autogram autogram, AdmissionController admissionController) {
         this.autogram = autogram;
+        this.admissionController = admissionController;
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
+        SignRequestBody body = null;
+        AdmissionController.Permit permit = null;
+        var jobStarted = false;
         try {
-            var body = EndpointUtils.loadFromJsonExchange(exchange, SignRequestBody.class);
+            permit = admissionController.admit(EndpointUtils.getOrigin(exchange),
+                    EndpointUtils.getRequestContentLength(exchange));
+
+            var isBinaryRequest = EndpointUtils.isMultipartExchange(exchange);
+            body = isBinaryRequest ? EndpointUtils.loadSignRequestFromMultipartExchange(exchange)
+                    : EndpointUtils.loadSignRequestFromJsonExchange(exchange);
+            var binaryResponse = EndpointUtils.acceptsBinaryResponse(exchange, isBinaryRequest);
+            permit.ensureBytes(body.getDocumentContentSize());
+
+            var requestBody = body;
+            var requestPermit = permit;
+            Runnable onResponded = () -> {
+                requestBody.releaseDocumentContent();
+                requestPermit.release();
+            };
 
             MimeType transformationOutputMimeTypeForXdc = null;
             if (body.getParameters().getContainer() != null) {
@@ -38,17 +57,21 @@ public class SignEndpoint implements HttpHandler {
 
             Responder responder;
             if (body.getBatchId() != null) {
-                responder = new ResponderInBatch(new ServerResponder(exchange), autogram.getBatch(body.getBatchId()));
+                responder = new ResponderInBatch(new ServerResponder(exchange, onResponded, binaryResponse),
+                        autogram.getBatch(body.getBatchId()));
             } else {
-                responder = new ServerResponder(exchange);
+                responder = new ServerResponder(exchange, onResponded, binaryResponse);
             }
-            var job = new SigningJob(body.getDocument(), body.getParameters(), responder, transformationOutputMimeTypeForXdc);
+            var job = body.isBundle() ? new SigningJob(body.getDocuments(), body.getParameters(), responder)
+                    : new SigningJob(body.getDocument(), body.getParameters(), responder,
+                            transformationOutputMimeTypeForXdc);
 
             if (body.getBatchId() != null) {
                 autogram.batchSign(job, body.getBatchId());
             } else {
                 autogram.sign(job);
             }
+            jobStarted = true;
 
         } catch (JsonSyntaxException e) {
             var response = ErrorResponse.buildFromException(new MalformedBodyException(e.getMessage(), e));
@@ -61,6 +84,15 @@ public class SignEndpoint implements HttpHandler {
             EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
         } catch (Exception e) {
             EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+        } finally {
+            // responder frees the request content and the permit once the job is started
+            if (!jobStarted) {
+                if (body != null)
+                    body.releaseDocumentContent();
+
+                if (permit != null)
+                    permit.release();
+            }
         }
     }
 }
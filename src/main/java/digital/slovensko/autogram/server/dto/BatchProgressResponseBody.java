@@ -0,0 +1,32 @@
+package digital.slovensko.autogram.server.dto;
+
+import java.util.List;
+
+import digital.slovensko.autogram.core.Batch;
+
+public record BatchProgressResponseBody(String batchId, String status, int totalNumberOfDocuments,
+        int addedDocumentsCount, int processedDocumentsCount, int successfulDocumentsCount, int failedDocumentsCount,
+        Double documentsPerSecond, List<DocumentStatus> documents) {
+
+    public record DocumentStatus(int index, String name, String status, ErrorResponseBody error) {
+    }
+
+    public static BatchProgressResponseBody buildFromBatch(String batchId, Batch batch) {
+        var documents = batch.getDocuments().stream().map(document -> new DocumentStatus(document.getIndex(),
+                document.getName(), document.getState().name(),
+                document.getError() == null ? null : ErrorResponse.buildFromException(document.getError()).getBody()))
+                .toList();
+
+        var processed = batch.getProcessedDocumentsCount();
+        Double documentsPerSecond = null;
+        if (batch.getStartDate() != null) {
+            var elapsedMillis = System.currentTimeMillis() - batch.getStartDate().getTime();
+            if (elapsedMillis > 0)
+                documentsPerSecond = processed * 1000.0 / elapsedMillis;
+        }
+
+        return new BatchProgressResponseBody(batchId, batch.getState(), batch.getTotalNumberOfDocuments(),
+                batch.getAddedDocumentsCount(), processed, batch.getSuccessfulDocumentsCount(),
+                batch.getFailedDocumentsCount(), documentsPerSecond, documents);
+    }
+}
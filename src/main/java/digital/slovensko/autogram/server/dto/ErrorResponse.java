@@ -1,10 +1,13 @@
 package digital.slovensko.autogram.server.dto;
 
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.TokenQueueFullException;
+import digital.slovensko.autogram.server.errors.ServiceOverloadedException;
 
 public class ErrorResponse {
     private final int statusCode;
     private final ErrorResponseBody body;
+    private Integer retryAfterSeconds = null;
 
     public ErrorResponse(int statusCode, ErrorResponseBody body) {
         this.statusCode = statusCode;
@@ -27,6 +30,15 @@ public class ErrorResponse {
         return body;
     }
 
+    public Integer getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    private ErrorResponse withRetryAfter(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
     public static ErrorResponse buildFromException(Exception e) {
         // TODO maybe replace with pattern matching someday
         return switch (e.getClass().getSimpleName()) {
@@ -34,14 +46,24 @@ public class ErrorResponse {
             case "UnrecognizedException" -> new ErrorResponse(502, "UNRECOGNIZED_DSS_ERROR", (AutogramException) e);
             case "UnsupportedSignatureLevelExceptionError" -> new ErrorResponse(422, "UNSUPPORTED_SIGNATURE_LEVEL", (AutogramException) e);
             case "RequestValidationException" -> new ErrorResponse(422, "UNPROCESSABLE_INPUT", (AutogramException) e);
+            case "BundleNotSupportedException" -> new ErrorResponse(422, "UNPROCESSABLE_INPUT", (AutogramException) e);
             case "MalformedBodyException" -> new ErrorResponse(400, "MALFORMED_INPUT", (AutogramException) e);
             case "TransformationException" -> new ErrorResponse(400, "TRANSFORMATION_FAILED", (AutogramException) e);
             case "AutogramException" -> new ErrorResponse(502, "SIGNING_FAILED", (AutogramException) e);
             case "EmptyBodyException" -> new ErrorResponse(400, "EMPTY_BODY", (AutogramException) e);
+            case "RequestBodyTooLargeException" -> new ErrorResponse(413, "PAYLOAD_TOO_LARGE", (AutogramException) e);
+            case "UnsupportedContentEncodingException" -> new ErrorResponse(415, "UNSUPPORTED_CONTENT_ENCODING", (AutogramException) e);
             case "BatchEndedException" -> new ErrorResponse(400, "BATCH_ENDED", (AutogramException) e);
             case "BatchNotStartedException" -> new ErrorResponse(400, "BATCH_NOT_STARTED", (AutogramException) e);
             case "BatchNotFoundException" -> new ErrorResponse(404, "BATCH_NOT_FOUND", (AutogramException) e);
             case "BatchConflictException" -> new ErrorResponse(400, "BATCH_CONFLICT", (AutogramException) e);
+            case "TooManyRequestsException" -> new ErrorResponse(429, "TOO_MANY_REQUESTS", (AutogramException) e)
+                    .withRetryAfter(((ServiceOverloadedException) e).getRetryAfterSeconds());
+            case "ServiceOverloadedException" -> new ErrorResponse(503, "SERVICE_OVERLOADED", (AutogramException) e)
+                    .withRetryAfter(((ServiceOverloadedException) e).getRetryAfterSeconds());
+            case "TokenQueueFullException" -> new ErrorResponse(503, "SERVICE_OVERLOADED", (AutogramException) e)
+                    .withRetryAfter(((TokenQueueFullException) e).getRetryAfterSeconds());
+            case "SigningKeyClosedException" -> new ErrorResponse(502, "SIGNING_KEY_CLOSED", (AutogramException) e);
             default -> new ErrorResponse(500, "INTERNAL_ERROR", "Unexpected exception signing document", e.getMessage());
         };
     }
@@ -2,12 +2,12 @@ package digital.slovensko.autogram.server.dto;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
-import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.SchemaFactory;
 
 import digital.slovensko.autogram.core.errors.OriginalDocumentNotFoundException;
 import eu.europa.esig.dss.model.DSSDocument;
@@ -15,56 +15,186 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import digital.slovensko.autogram.core.AutogramMimeType;
+import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.SigningParameters;
 import digital.slovensko.autogram.core.XDCTransformer;
+import digital.slovensko.autogram.core.XsdSchemaCache;
+import digital.slovensko.autogram.core.errors.BundleNotSupportedException;
 import digital.slovensko.autogram.core.errors.InvalidXMLException;
 import digital.slovensko.autogram.core.errors.XMLValidationException;
 import digital.slovensko.autogram.server.errors.MalformedBodyException;
 import digital.slovensko.autogram.server.errors.RequestValidationException;
 import digital.slovensko.autogram.util.AsicContainerUtils;
+import digital.slovensko.autogram.util.SpooledContent;
 import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.model.CommonDocument;
 import eu.europa.esig.dss.model.InMemoryDocument;
 
 import static digital.slovensko.autogram.core.AutogramMimeType.*;
 
 public class SignRequestBody {
     private final Document document;
+    /** Documents signed together in one ASiC-E container instead of the single document */
+    private final List<Document> documents;
     private final ServerSigningParameters parameters;
     private final String payloadMimeType;
     private final String batchId;
 
+    /** Document content streamed out of the request body, takes precedence over Document.content */
+    private transient SpooledContent spooledDocumentContent = null;
+    private transient CommonDocument spooledDocument = null;
+    private transient String spooledDocumentFilename = null;
+    private transient String spooledPayloadMimeType = null;
+
     public SignRequestBody(Document document, ServerSigningParameters parameters, String payloadMimeType) {
         this(document, parameters, payloadMimeType, null);
     }
 
     public SignRequestBody(Document document, ServerSigningParameters parameters, String payloadMimeType,
             String batchId) {
+        this(document, null, parameters, payloadMimeType, batchId);
+    }
+
+    public SignRequestBody(Document document, List<Document> documents, ServerSigningParameters parameters,
+            String payloadMimeType, String batchId) {
         this.document = document;
+        this.documents = documents;
         this.parameters = parameters;
         this.payloadMimeType = payloadMimeType;
         this.batchId = batchId;
     }
 
-    public InMemoryDocument getDocument() throws RequestValidationException {
-        if (payloadMimeType == null)
+    public void setSpooledDocumentContent(SpooledContent content) {
+        this.spooledDocumentContent = content;
+    }
+
+    /**
+     * Attaches document content sent outside of the JSON body, e.g. as a binary multipart part. Filename and MIME
+     * type of the part are used only if the JSON body does not specify them.
+     */
+    public void setSpooledDocumentContent(SpooledContent content, String filename, String mimeType) {
+        this.spooledDocumentContent = content;
+        this.spooledDocumentFilename = filename;
+        this.spooledPayloadMimeType = mimeType;
+    }
+
+    public CommonDocument getDocument() throws RequestValidationException {
+        if (getPayloadMimeType() == null)
             throw new RequestValidationException("PayloadMimeType is required", "");
 
+        if (spooledDocumentContent != null)
+            return getSpooledDocument();
+
         if (document == null)
             throw new RequestValidationException("Document is required", "");
 
         if (document.getContent() == null)
             throw new RequestValidationException("Document.Content is required", "");
 
-        var content = decodeDocumentContent();
+        var content = decodeDocumentContent(document.getContent());
         var filename = document.getFilename();
 
         return new InMemoryDocument(content, filename, getMimetype());
     }
 
+    /**
+     * @return true when several documents are to be signed with one signature
+     */
+    public boolean isBundle() {
+        return documents != null;
+    }
+
+    /**
+     * Documents of a bundle, their MIME types are detected from filenames, payloadMimeType only tells whether their
+     * content is base64 encoded
+     */
+    public List<CommonDocument> getDocuments() throws RequestValidationException {
+        if (getPayloadMimeType() == null)
+            throw new RequestValidationException("PayloadMimeType is required", "");
+
+        if (document != null || spooledDocumentContent != null)
+            throw new RequestValidationException("Document and Documents cannot be combined",
+                    "Send either a single Document or Documents to be signed together");
+
+        if (documents.isEmpty())
+            throw new RequestValidationException("Documents must not be empty", "");
+
+        var bundled = new ArrayList<CommonDocument>();
+        for (int i = 0; i < documents.size(); i++) {
+            var bundledDocument = documents.get(i);
+            if (bundledDocument == null || bundledDocument.getContent() == null)
+                throw new RequestValidationException("Documents[" + i + "].Content is required", "");
+
+            if (bundledDocument.getFilename() == null)
+                throw new RequestValidationException("Documents[" + i + "].Filename is required",
+                        "Documents are stored in the container under their filenames");
+
+            var filename = bundledDocument.getFilename();
+            bundled.add(new InMemoryDocument(decodeDocumentContent(bundledDocument.getContent()), filename,
+                    MimeType.fromFileName(filename)));
+        }
+
+        try {
+            SigningJob.validateBundleDocuments(bundled);
+        } catch (BundleNotSupportedException e) {
+            throw new RequestValidationException(e.getSubheading(), e.getDescription());
+        }
+
+        return bundled;
+    }
+
+    private CommonDocument getSpooledDocument() throws MalformedBodyException {
+        if (spooledDocument != null)
+            return spooledDocument;
+
+        try {
+            if (isBase64()) {
+                var decoded = SpooledContent.readFrom(Base64.getDecoder().wrap(spooledDocumentContent.openStream()));
+                spooledDocumentContent.release();
+                spooledDocumentContent = decoded;
+            }
+
+            spooledDocument = spooledDocumentContent.toDocument(getFilename(), getMimetype());
+            return spooledDocument;
+
+        } catch (IOException e) {
+            throw new MalformedBodyException("Base64 decoding failed", "Invalid document content");
+        }
+    }
+
+    /**
+     * @return size of the streamed document content in bytes, 0 if the content is part of the JSON body
+     */
+    public long getDocumentContentSize() {
+        return spooledDocumentContent == null ? 0 : spooledDocumentContent.size();
+    }
+
+    /**
+     * Frees the streamed document content, to be called once the request was responded to
+     */
+    public void releaseDocumentContent() {
+        if (spooledDocumentContent != null)
+            spooledDocumentContent.release();
+    }
+
+    private String getFilename() {
+        if (document != null && document.getFilename() != null)
+            return document.getFilename();
+
+        return spooledDocumentFilename;
+    }
+
+    private String getPayloadMimeType() {
+        return payloadMimeType != null ? payloadMimeType : spooledPayloadMimeType;
+    }
+
     public SigningParameters getParameters() throws RequestValidationException, MalformedBodyException {
         if (parameters == null)
             throw new RequestValidationException("Parameters are required", "");
 
+        if (isBundle())
+            return getBundleParameters();
+
         parameters.validate(getDocument().getMimeType());
 
         var signingParameters = parameters.getSigningParameters(isBase64());
@@ -76,8 +206,19 @@ public class SignRequestBody {
     }
 
 
+    private SigningParameters getBundleParameters() throws RequestValidationException {
+        var signingParameters = parameters.getSigningParameters(isBase64());
+        try {
+            SigningJob.validateBundleParameters(signingParameters);
+        } catch (BundleNotSupportedException e) {
+            throw new RequestValidationException(e.getSubheading(), e.getDescription());
+        }
+
+        return signingParameters;
+    }
+
     private MimeType getMimetype() {
-        return AutogramMimeType.fromMimeTypeString(payloadMimeType.split(";")[0]);
+        return AutogramMimeType.fromMimeTypeString(getPayloadMimeType().split(";")[0]);
     }
 
     public String getBatchId() {
@@ -85,7 +226,7 @@ public class SignRequestBody {
     }
 
     private boolean isBase64() {
-        return payloadMimeType.contains("base64");
+        return getPayloadMimeType().contains("base64");
     }
 
     private void validateXml(SigningParameters signingParameters) throws RequestValidationException, MalformedBodyException {
@@ -115,7 +256,15 @@ public class SignRequestBody {
         } else if (isXDC(getMimetype())) {
             return getXmlContentFromXdc(signingParameters, getDocument());
         }  else {
-            return new String(decodeDocumentContent());
+            return getXmlContentFromDocument();
+        }
+    }
+
+    private String getXmlContentFromDocument() throws InvalidXMLException {
+        try (var stream = getDocument().openStream()) {
+            return new String(stream.readAllBytes());
+        } catch (IOException e) {
+            throw new InvalidXMLException("XML validation failed", "Unable to read document content");
         }
     }
 
@@ -157,8 +306,7 @@ public class SignRequestBody {
             return true;
 
         try {
-            var factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            var schema = factory.newSchema(new StreamSource(new StringReader(xsdSchema)));
+            var schema = XsdSchemaCache.getSchema(xsdSchema);
             var validator = schema.newValidator();
             validator.validate(new StreamSource(new StringReader(xmlContent)));
 
@@ -169,12 +317,12 @@ public class SignRequestBody {
         }
     }
 
-    private byte[] decodeDocumentContent() throws MalformedBodyException {
+    private byte[] decodeDocumentContent(String content) throws MalformedBodyException {
         try {
             if (isBase64())
-                return Base64.getDecoder().decode(document.getContent());
+                return Base64.getDecoder().decode(content);
 
-            return document.getContent().getBytes();
+            return content.getBytes();
 
         } catch (IllegalArgumentException e) {
             throw new MalformedBodyException("Base64 decoding failed", "Invalid document content");
@@ -0,0 +1,10 @@
+package digital.slovensko.autogram.server.errors;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class RequestBodyTooLargeException extends AutogramException {
+    public RequestBodyTooLargeException(long maxBodyBytes) {
+        super("Request body too large", "Request body is larger than " + maxBodyBytes + " bytes",
+                "Limit applies to the decompressed body of compressed requests.");
+    }
+}
@@ -0,0 +1,7 @@
+package digital.slovensko.autogram.server.errors;
+
+public class TooManyRequestsException extends ServiceOverloadedException {
+    public TooManyRequestsException(String message, int retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
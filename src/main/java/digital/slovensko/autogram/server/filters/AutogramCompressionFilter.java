@@ -0,0 +1,336 @@
+package digital.slovensko.autogram.server.filters;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import digital.slovensko.autogram.server.EndpointUtils;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.errors.RequestBodyTooLargeException;
+import digital.slovensko.autogram.server.errors.UnsupportedContentEncodingException;
+
+/**
+ * Decompress gzip/deflate request bodies (Content-Encoding) and compress response bodies by Accept-Encoding.
+ *
+ * Both directions are streamed, responses are compressed only for textual content types and when they are not
+ * known to be tiny. Request bodies are limited to maxBodyBytes after decompression, so a small compressed body
+ * cannot expand without bound.
+ */
+public class AutogramCompressionFilter extends Filter {
+    private static final int MIN_COMPRESSED_LENGTH = 1024;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // rejected bodies up to this size are read, so the client still sending them gets the error and not a reset
+    private static final long MAX_DISCARDED_BODY_BYTES = 2 * 1024 * 1024;
+
+    private final long maxBodyBytes;
+
+    public AutogramCompressionFilter() {
+        this(Long.parseLong(getProperty("server.maxRequestBodyBytes")));
+    }
+
+    /**
+     * @param maxBodyBytes - largest accepted (decompressed) request body, 0 disables the limit
+     */
+    public AutogramCompressionFilter(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public String description() {
+        return "Decompress request body and compress response body";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        var requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        var contentLength = EndpointUtils.getRequestContentLength(exchange);
+        if (requestEncoding != null && !requestEncoding.equalsIgnoreCase("identity")
+                && getEncoding(requestEncoding) == null) {
+            discardSmallBody(exchange, contentLength);
+            EndpointUtils.respondWithError(
+                    ErrorResponse.buildFromException(new UnsupportedContentEncodingException(requestEncoding)),
+                    exchange);
+            return;
+        }
+
+        if (maxBodyBytes > 0 && contentLength > maxBodyBytes) {
+            discardSmallBody(exchange, contentLength);
+            EndpointUtils.respondWithError(
+                    ErrorResponse.buildFromException(new RequestBodyTooLargeException(maxBodyBytes)), exchange);
+            return;
+        }
+
+        // handlers may respond asynchronously (after the user signs), closing the response body is up to them
+        chain.doFilter(new CompressingExchange(exchange, getEncoding(requestEncoding),
+                getAcceptedEncoding(exchange.getRequestHeaders().getFirst("Accept-Encoding")), maxBodyBytes));
+    }
+
+    /**
+     * Reads a rejected body of known length unless it is large, so the client still sending it gets the error and
+     * not a reset
+     */
+    private static void discardSmallBody(HttpExchange exchange, long contentLength) throws IOException {
+        if (contentLength > 0 && contentLength <= MAX_DISCARDED_BODY_BYTES)
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static String getEncoding(String value) {
+        if (value == null)
+            return null;
+
+        var encoding = value.trim().toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> "gzip";
+            case "deflate" -> "deflate";
+            default -> null;
+        };
+    }
+
+    /**
+     * @return gzip or deflate if accepted (gzip preferred), null otherwise
+     */
+    static String getAcceptedEncoding(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+
+        var deflateAccepted = false;
+        for (var token : acceptEncoding.split(",")) {
+            var parts = token.split(";");
+            var encoding = getEncoding(parts[0]);
+            if (encoding == null || isRejected(parts))
+                continue;
+
+            if (encoding.equals("gzip"))
+                return encoding;
+
+            deflateAccepted = true;
+        }
+
+        return deflateAccepted ? "deflate" : null;
+    }
+
+    private static boolean isRejected(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            var parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null)
+            return false;
+
+        var type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.equals("application/json") || type.equals("application/xml")
+                || type.endsWith("+xml") || type.endsWith("+json");
+    }
+
+    /**
+     * Fails with {@link RequestBodyTooLargeException} once more than limit bytes are read
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count = 0;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = super.read();
+            if (b >= 0)
+                count(1);
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var n = super.read(b, off, len);
+            if (n > 0)
+                count(n);
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) {
+            count += n;
+            if (count > limit)
+                throw new RequestBodyTooLargeException(limit);
+        }
+    }
+
+    private static class CompressingExchange extends HttpExchange {
+        private final HttpExchange exchange;
+        private final String requestEncoding;
+        private final String responseEncoding;
+        private final long maxBodyBytes;
+        private InputStream requestBody = null;
+        private OutputStream compressedResponseBody = null;
+
+        private CompressingExchange(HttpExchange exchange, String requestEncoding, String responseEncoding,
+                long maxBodyBytes) {
+            this.exchange = exchange;
+            this.requestEncoding = requestEncoding;
+            this.responseEncoding = responseEncoding;
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            if (requestBody == null) {
+                InputStream body;
+                try {
+                    if (requestEncoding == null)
+                        body = exchange.getRequestBody();
+                    else
+                        body = requestEncoding.equals("gzip")
+                                ? new GZIPInputStream(exchange.getRequestBody(), BUFFER_SIZE)
+                                : new InflaterInputStream(exchange.getRequestBody());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+
+                requestBody = maxBodyBytes > 0 ? new LimitedInputStream(body, maxBodyBytes) : body;
+            }
+
+            return requestBody;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            var hasBody = responseLength >= 0 && rCode != 204 && rCode != 304;
+            var isLarge = responseLength == 0 || responseLength >= MIN_COMPRESSED_LENGTH;
+            if (responseEncoding == null || !hasBody || !isLarge
+                    || !isCompressible(exchange.getResponseHeaders().getFirst("Content-Type"))) {
+                exchange.sendResponseHeaders(rCode, responseLength);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Encoding", responseEncoding);
+            exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+            exchange.sendResponseHeaders(rCode, 0);
+
+            var body = exchange.getResponseBody();
+            compressedResponseBody = responseEncoding.equals("gzip") ? new GZIPOutputStream(body, BUFFER_SIZE)
+                    : new DeflaterOutputStream(body);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return compressedResponseBody != null ? compressedResponseBody : exchange.getResponseBody();
+        }
+
+        @Override
+        public void close() {
+            if (compressedResponseBody != null) {
+                try {
+                    // writes the compression trailer, closes the underlying body
+                    compressedResponseBody.close();
+                } catch (IOException e) {
+                    // client is gone, nothing more to do
+                }
+            }
+
+            exchange.close();
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return exchange.getRequestHeaders();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return exchange.getResponseHeaders();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return exchange.getRequestURI();
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return exchange.getRequestMethod();
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return exchange.getHttpContext();
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return exchange.getRemoteAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return exchange.getResponseCode();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return exchange.getLocalAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return exchange.getProtocol();
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return exchange.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            exchange.setAttribute(name, value);
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            exchange.setStreams(i, o);
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return exchange.getPrincipal();
+        }
+    }
+}
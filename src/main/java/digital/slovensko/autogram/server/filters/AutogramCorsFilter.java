@@ -37,7 +37,9 @@ public class AutogramCorsFilter extends Filter {
         exchange.getResponseHeaders().add("Access-Control-Allow-Methods",
                 String.join(",", methods));
         exchange.getResponseHeaders().add("Access-Control-Allow-Headers",
-                "Content-Type, Authorization");
+                "Content-Type, Content-Encoding, Authorization");
+        exchange.getResponseHeaders().add("Access-Control-Expose-Headers",
+                "Content-Disposition, X-Autogram-Signed-By, X-Autogram-Issued-By");
 
         // Allow preflight requests
         if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
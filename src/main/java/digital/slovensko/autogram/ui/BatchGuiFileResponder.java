@@ -2,9 +2,10 @@ package digital.slovensko.autogram.ui;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.core.Batch;
@@ -19,9 +20,9 @@ import eu.europa.esig.dss.enumerations.SignatureLevel;
 public class BatchGuiFileResponder extends BatchResponder {
     private final Autogram autogram;
     private final List<File> list;
-    private final Map<File, File> targetFiles = new HashMap<>();
-    private final Map<File, AutogramException> errors = new HashMap<>();
-    private boolean uiNotifiedOnAllFilesSigned = false;
+    private final Map<File, File> targetFiles = new ConcurrentHashMap<>();
+    private final Map<File, AutogramException> errors = new ConcurrentHashMap<>();
+    private final AtomicBoolean uiNotifiedOnAllFilesSigned = new AtomicBoolean(false);
     private final TargetPath targetPath;
     private final boolean checkPDFACompliance;
     private final SignatureLevel pDFSignatureLevel;
@@ -47,8 +48,6 @@ public class BatchGuiFileResponder extends BatchResponder {
 
         for (File file : list) {
             try {
-                targetFiles.put(file, null);
-                errors.put(file, null);
                 var responder = new ResponderInBatch(new SaveFileFromBatchResponder(file, targetPath, (File targetFile) -> {
                     targetFiles.put(file, targetFile);
                     Logging.log(batch.getProcessedDocumentsCount() + " / " + batch.getTotalNumberOfDocuments() + " signed " + file.toString());
@@ -68,10 +67,9 @@ public class BatchGuiFileResponder extends BatchResponder {
         }
     }
 
-    private void onAllFilesSigned(Batch batch) { // synchronized
-        Logging.log("onAllFilesSigned " + batch.isAllProcessed() + " " + uiNotifiedOnAllFilesSigned);
-        if (batch.isAllProcessed() && !uiNotifiedOnAllFilesSigned) {
-            uiNotifiedOnAllFilesSigned = true;
+    private void onAllFilesSigned(Batch batch) {
+        Logging.log("onAllFilesSigned " + batch.isAllProcessed() + " " + uiNotifiedOnAllFilesSigned.get());
+        if (batch.isAllProcessed() && uiNotifiedOnAllFilesSigned.compareAndSet(false, true)) {
             Logging.log(errors.values().stream().map(e -> e == null ? "" : e.toString()).toList());
             var result = new BatchUiResult(targetPath, targetFiles, errors);
             autogram.onDocumentBatchSaved(result);
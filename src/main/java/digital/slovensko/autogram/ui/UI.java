@@ -16,7 +16,7 @@ public interface UI {
 
     void startBatch(Batch batch, Autogram autogram, Consumer<SigningKey> callback);
 
-    void signBatch(SigningJob job, SigningKey key);
+    void onBatchDocumentProcessed(Batch batch);
 
     void cancelBatch(Batch batch);
 
@@ -28,6 +28,14 @@ public interface UI {
 
     void pickKeyAndThen(List<DSSPrivateKeyEntry> keys, Consumer<DSSPrivateKeyEntry> callback);
 
+    /**
+     * Picks a key, onCancel runs instead of the callback when no key is picked
+     */
+    default void pickKeyAndThen(List<DSSPrivateKeyEntry> keys, Consumer<DSSPrivateKeyEntry> callback,
+            Runnable onCancel) {
+        pickKeyAndThen(keys, callback);
+    }
+
     void onPickSigningKeyFailed(AutogramException e);
 
     void onSigningSuccess(SigningJob job);
@@ -40,6 +48,13 @@ public interface UI {
 
     void onWorkThreadDo(Runnable callback);
 
+    /**
+     * Runs callback on a work thread of the given pool
+     */
+    default void onWorkThreadDo(ExecutorRegistry.Pool pool, Runnable callback) {
+        onWorkThreadDo(callback);
+    }
+
     void onUIThreadDo(Runnable callback);
 
     void onUpdateAvailable();
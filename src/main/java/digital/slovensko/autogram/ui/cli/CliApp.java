@@ -1,17 +1,33 @@
 package digital.slovensko.autogram.ui.cli;
 
 import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.BatchSigningPipeline;
 import digital.slovensko.autogram.core.CliParameters;
+import digital.slovensko.autogram.core.PerformanceStats;
 import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.SigningKey;
+import digital.slovensko.autogram.core.SigningKeyPool;
 import digital.slovensko.autogram.core.errors.SourceNotDefindedException;
 import digital.slovensko.autogram.core.TargetPath;
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.EmptyDirectorySelectedException;
+import digital.slovensko.autogram.core.errors.PDFAComplianceException;
 import digital.slovensko.autogram.core.errors.SourceDoesNotExistException;
+import digital.slovensko.autogram.core.errors.SourceNotReadableException;
 import digital.slovensko.autogram.ui.SaveFileResponder;
+import eu.europa.esig.dss.pdfa.PDFAStructureValidator;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.apache.commons.cli.CommandLine;
 
@@ -30,28 +46,158 @@ public class CliApp {
             if (!params.getSource().exists())
                 throw new SourceDoesNotExistException();
 
+            if (params.isBundle()) {
+                signBundle(autogram, ui, params);
+                return;
+            }
+
             var targetPathBuilder = TargetPath.fromParams(params);
             targetPathBuilder.mkdirIfDir();
 
             var source = params.getSource();
-            var sourceList = source.isDirectory() ? source.listFiles() : new File[] { source };
-            var jobs = Arrays.stream(sourceList).filter(f -> f.isFile())
-                    .map(f -> SigningJob.buildFromFile(f, new SaveFileResponder(f, autogram, targetPathBuilder),
-                            params.shouldCheckPDFACompliance(), params.pdfSignatureLevel(), params.shouldSignAsEn319132()))
-                    .toList();
-            if (params.shouldCheckPDFACompliance()) {
-                jobs.forEach(job -> {
-                    System.out.println("Checking PDF/A file compatibility for " + job.getDocument().getName());
-                    autogram.checkPDFACompliance(job);
-                });
-            }
+            try (var files = listSourceFiles(source, params.isRecursive(), targetPathBuilder.getTargetDirectory())) {
+                if (params.getParallelism() > 1 || params.getSlotIds().size() > 1) {
+                    signInParallel(autogram, ui, files, params, targetPathBuilder);
+                    return;
+                }
 
-            ui.setJobsCount(jobs.size());
+                if (!source.isDirectory())
+                    ui.setJobsCount(1);
 
-            jobs.forEach(autogram::sign);
+                files.forEach(file -> {
+                    var job = buildJob(file, autogram, params, targetPathBuilder);
+                    if (params.shouldCheckPDFACompliance()) {
+                        System.out.println("Checking PDF/A file compatibility for " + job.getDocument().getName());
+                        autogram.checkPDFACompliance(job);
+                    }
+
+                    autogram.sign(job);
+                });
+            } catch (IOException | UncheckedIOException e) {
+                throw new SourceNotReadableException(e);
+            }
 
         } catch (AutogramException e) {
             ui.showError(e);
+        } finally {
+            PerformanceStats.log();
         }
     }
+
+    /**
+     * Lists files to sign lazily, so signing starts right away and the listing is never held in memory as a whole.
+     * Files in the target directory are skipped in case it lies inside the source directory.
+     */
+    private static Stream<File> listSourceFiles(File source, boolean recursive, Path targetDirectory)
+            throws IOException {
+        if (!source.isDirectory())
+            return Stream.of(source);
+
+        var target = targetDirectory == null ? null : targetDirectory.toAbsolutePath().normalize();
+        var paths = recursive ? Files.walk(source.toPath()) : Files.list(source.toPath());
+
+        return paths.filter(path -> target == null || !path.toAbsolutePath().normalize().startsWith(target))
+                .filter(Files::isRegularFile)
+                .map(Path::toFile);
+    }
+
+    /**
+     * Signs all source files with one signature in one container, so the token is used only once
+     */
+    private static void signBundle(Autogram autogram, CliUI ui, CliParameters params) {
+        var source = params.getSource();
+        var targetPath = TargetPath.forBundle(params);
+        targetPath.mkdirIfDir();
+
+        List<File> files;
+        try (var listed = listSourceFiles(source, params.isRecursive(), null)) {
+            files = listed.toList();
+        } catch (IOException | UncheckedIOException e) {
+            throw new SourceNotReadableException(e);
+        }
+
+        if (files.isEmpty())
+            throw new EmptyDirectorySelectedException(source.getAbsolutePath());
+
+        System.out.println("Signing %d files into one container".formatted(files.size()));
+        var job = SigningJob.buildBundleFromFiles(files, new SaveFileResponder(source, autogram, targetPath),
+                params.pdfSignatureLevel(), params.shouldSignAsEn319132());
+        ui.setJobsCount(1);
+        autogram.sign(job);
+    }
+
+    private static SigningJob buildJob(File file, Autogram autogram, CliParameters params, TargetPath targetPath) {
+        return SigningJob.buildFromFile(file, new SaveFileResponder(file, autogram, targetPath),
+                params.shouldCheckPDFACompliance(), params.pdfSignatureLevel(), params.shouldSignAsEn319132());
+    }
+
+    /**
+     * Prepares, checks PDF/A compliance and saves files on a pool of worker threads while the token signs one file at
+     * a time. A file which is not PDF/A compliant fails alone instead of stopping the whole run. With several slots
+     * every token signs its own share of the files.
+     *
+     * Jobs are built on the workers as the pipeline frees up, at most two per worker exist at once.
+     */
+    private static void signInParallel(Autogram autogram, CliUI ui, Stream<File> files, CliParameters params,
+            TargetPath targetPath) {
+        var keyPool = params.getSlotIds().size() > 1 ? ui.pickSigningKeyPool(autogram, params.getSlotIds())
+                : singleKeyPool(ui.pickSigningKey(autogram));
+        if (keyPool == null)
+            return;
+
+        var parallelism = params.getParallelism();
+        var workers = Executors.newFixedThreadPool(parallelism);
+        var pipeline = new BatchSigningPipeline(parallelism, workers, job -> {
+            if (job.shouldCheckPDFCompliance() && !new PDFAStructureValidator().validate(job.getDocument()).isCompliant())
+                throw new PDFAComplianceException();
+        });
+
+        var maxJobs = parallelism * 2;
+        var jobSlots = new Semaphore(maxJobs);
+        var filesCount = new AtomicInteger();
+        var failedToBuildCount = new AtomicInteger();
+
+        System.out.println("Signing files, %d in parallel with %d token(s)".formatted(parallelism,
+                keyPool.getMembers().size()));
+        var start = System.nanoTime();
+        try {
+            for (var iterator = files.iterator(); iterator.hasNext();) {
+                var file = iterator.next();
+                jobSlots.acquire();
+                filesCount.incrementAndGet();
+                workers.execute(() -> {
+                    SigningJob job;
+                    try {
+                        job = buildJob(file, autogram, params, targetPath);
+                    } catch (Exception e) {
+                        failedToBuildCount.incrementAndGet();
+                        System.err.println("Sign failed error occurred: " + e);
+                        jobSlots.release();
+                        return;
+                    }
+
+                    pipeline.submit(job, keyPool, jobSlots::release);
+                });
+            }
+
+            // all slots are free again once every file has been processed
+            jobSlots.acquire(maxJobs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+
+        var seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        var throughput = seconds > 0 ? pipeline.getSignedCount() / seconds : 0;
+        System.out.println("Signed %d, failed %d of %d files in %.1f s (%.2f files/s)".formatted(
+                pipeline.getSignedCount(), pipeline.getFailedCount() + failedToBuildCount.get(), filesCount.get(),
+                seconds, throughput));
+        if (keyPool.getMembers().size() > 1)
+            keyPool.getMembers().forEach(member -> System.out.println("  " + member));
+    }
+
+    private static SigningKeyPool singleKeyPool(SigningKey key) {
+        return key == null ? null : SigningKeyPool.of(key);
+    }
 }
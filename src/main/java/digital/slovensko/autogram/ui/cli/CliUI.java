@@ -5,6 +5,7 @@ import static digital.slovensko.autogram.util.DSSUtils.parseCN;
 import java.io.File;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import digital.slovensko.autogram.Main;
@@ -12,9 +13,12 @@ import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.core.Batch;
 import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.SigningKey;
+import digital.slovensko.autogram.core.SigningKeyPool;
 import digital.slovensko.autogram.core.Updater;
 import digital.slovensko.autogram.core.ValidationReports;
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.BundleNotSupportedException;
+import digital.slovensko.autogram.core.errors.EmptyDirectorySelectedException;
 import digital.slovensko.autogram.core.errors.FunctionCanceledException;
 import digital.slovensko.autogram.core.errors.InitializationFailedException;
 import digital.slovensko.autogram.core.errors.NoDriversDetectedException;
@@ -23,12 +27,14 @@ import digital.slovensko.autogram.core.errors.PDFAComplianceException;
 import digital.slovensko.autogram.core.errors.PDFSignatureLevelIsNotValidException;
 import digital.slovensko.autogram.core.errors.PINIncorrectException;
 import digital.slovensko.autogram.core.errors.PINLockedException;
+import digital.slovensko.autogram.core.errors.ParallelismIsNotValidException;
 import digital.slovensko.autogram.core.errors.SigningCanceledByUserException;
 import digital.slovensko.autogram.core.errors.SigningWithExpiredCertificateException;
 import digital.slovensko.autogram.core.errors.SlotIdIsNotANumberException;
 import digital.slovensko.autogram.core.errors.SourceAndTargetTypeMismatchException;
 import digital.slovensko.autogram.core.errors.SourceDoesNotExistException;
 import digital.slovensko.autogram.core.errors.SourceNotDefindedException;
+import digital.slovensko.autogram.core.errors.SourceNotReadableException;
 import digital.slovensko.autogram.core.errors.TargetAlreadyExistsException;
 import digital.slovensko.autogram.core.errors.TargetDirectoryDoesNotExistException;
 import digital.slovensko.autogram.core.errors.TokenDriverDoesNotExistException;
@@ -61,11 +67,36 @@ public class CliUI implements UI {
     }
 
     private void sign(SigningJob job, Autogram autogram) {
-        System.out.println("Starting signing file \"%s\" [%d/%d]".formatted(job.getDocument().getName(), nJobsSigned++,
-                nJobsTotal));
+        // files of a directory are listed lazily, their total count is not known up front
+        var progress = nJobsTotal > 0 ? "%d/%d".formatted(nJobsSigned++, nJobsTotal) : String.valueOf(nJobsSigned++);
+        System.out.println("Starting signing file \"%s\" [%s]".formatted(job.getDocument().getName(), progress));
         autogram.sign(job, activeKey);
     }
 
+    /**
+     * Picks the signing key unless already picked, callbacks run on the calling thread in CLI
+     *
+     * @return picked key or null if picking failed
+     */
+    SigningKey pickSigningKey(Autogram autogram) {
+        if (activeKey == null)
+            autogram.pickSigningKeyAndThen(key -> activeKey = key);
+
+        return activeKey;
+    }
+
+    /**
+     * Opens a token on every slot and picks their keys, callbacks run on the calling thread in CLI
+     *
+     * @return pool of the opened keys or null if picking failed
+     */
+    SigningKeyPool pickSigningKeyPool(Autogram autogram, List<Integer> slotIds) {
+        var pool = new AtomicReference<SigningKeyPool>();
+        autogram.pickSigningKeyPoolAndThen(slotIds, pool::set);
+
+        return pool.get();
+    }
+
     public void setJobsCount(int nJobsTotal) {
         this.nJobsTotal = nJobsTotal;
     }
@@ -76,7 +107,7 @@ public class CliUI implements UI {
     }
 
     @Override
-    public void signBatch(SigningJob job, SigningKey key) {
+    public void onBatchDocumentProcessed(Batch batch) {
         // TODO Auto-generated method stub
     }
 
@@ -120,8 +151,16 @@ public class CliUI implements UI {
 
     @Override
     public void pickKeyAndThen(List<DSSPrivateKeyEntry> keys, Consumer<DSSPrivateKeyEntry> callback) {
+        pickKeyAndThen(keys, callback, () -> {
+        });
+    }
+
+    @Override
+    public void pickKeyAndThen(List<DSSPrivateKeyEntry> keys, Consumer<DSSPrivateKeyEntry> callback,
+            Runnable onCancel) {
         if (keys.isEmpty()) {
             showError(new NoKeysDetectedException());
+            onCancel.run();
             return;
         }
 
@@ -270,6 +309,14 @@ public class CliUI implements UI {
             errMessage = "Slot ID is not a number";
         } else if (e instanceof PDFSignatureLevelIsNotValidException) {
             errMessage = "PDF signature level is not valid";
+        } else if (e instanceof SourceNotReadableException) {
+            errMessage = "Source directory can not be read";
+        } else if (e instanceof ParallelismIsNotValidException) {
+            errMessage = "Number of parallel files is not a positive number";
+        } else if (e instanceof EmptyDirectorySelectedException) {
+            errMessage = "Source directory is empty";
+        } else if (e instanceof BundleNotSupportedException) {
+            errMessage = "Files can not be signed into one container: " + e.getDescription();
         } else {
             errMessage = "Unknown error occurred";
             e.printStackTrace();
@@ -23,6 +23,8 @@ public class BatchDialogController implements SuppressedFocusController {
     private final Batch batch;
     private final Autogram autogram;
     private final Consumer<SigningKey> startBatchCallback;
+    /** Key of this batch only, the batch closes it when it ends */
+    private SigningKey signingKey;
 
     @FXML
     VBox mainBox;
@@ -68,51 +70,35 @@ public class BatchDialogController implements SuppressedFocusController {
     }
 
     public void onMainButtonPressed(ActionEvent event) {
-        var signingKey = gui.getActiveSigningKey();
-        if (signingKey == null) {
-            autogram.pickSigningKeyAndThen(key -> {
-                gui.setActiveSigningKeyAndThen(key, k -> {
-                    hideVisualization();
-                    showProgress();
-                    showCancelButton();
-                    getNodeForLoosingFocus().requestFocus();
-                    gui.disableSigning();
-                    gui.onWorkThreadDo(() -> {
-                        startBatchCallback.accept(k);
-                    });
-                });
-            });
-        } else {
-            hideVisualization();
-            showProgress();
-            showCancelButton();
-            getNodeForLoosingFocus().requestFocus();
-            gui.disableSigning();
-            gui.onWorkThreadDo(() -> {
-                startBatchCallback.accept(signingKey);
-            });
-        }
+        if (signingKey == null)
+            autogram.pickSigningKeyAndThen(this::startBatchWithKey);
+        else
+            startBatchWithKey(signingKey);
     }
 
-
     public void onChangeKeyButtonPressed(ActionEvent event) {
         if (batch.isKeyChangeAllowed()) {
-            gui.resetSigningKey();
-            autogram.pickSigningKeyAndThen(key -> {
-                gui.setActiveSigningKeyAndThen(key, k -> {
-                    hideVisualization();
-                    showProgress();
-                    showCancelButton();
-                    getNodeForLoosingFocus().requestFocus();
-                    gui.disableSigning();
-                    gui.onWorkThreadDo(() -> {
-                        startBatchCallback.accept(k);
-                    });
-                });
-            });
+            var previousKey = signingKey;
+            signingKey = null;
+            if (previousKey != null)
+                gui.onWorkThreadDo(previousKey::close);
+
+            autogram.pickSigningKeyAndThen(this::startBatchWithKey);
         }
     }
 
+    private void startBatchWithKey(SigningKey key) {
+        signingKey = key;
+        hideVisualization();
+        showProgress();
+        showCancelButton();
+        getNodeForLoosingFocus().requestFocus();
+        gui.disableSigning();
+        gui.onWorkThreadDo(() -> {
+            startBatchCallback.accept(key);
+        });
+    }
+
     public void onCancelBatchButtonPressed(ActionEvent event) {
         batch.end();
         close();
@@ -120,7 +106,7 @@ public class BatchDialogController implements SuppressedFocusController {
 
     public void refreshSigningKey() {
         if (batch.isKeyChangeAllowed()) {
-            var key = gui.getActiveSigningKey();
+            var key = signingKey;
 
             if (key == null) {
                 mainButton.setText("Podpísať");
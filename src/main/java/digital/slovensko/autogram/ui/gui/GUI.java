@@ -1,6 +1,7 @@
 package digital.slovensko.autogram.ui.gui;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -12,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.BundleNotSupportedException;
 import digital.slovensko.autogram.core.errors.NoDriversDetectedException;
 import digital.slovensko.autogram.core.errors.NoKeysDetectedException;
 import digital.slovensko.autogram.core.errors.NoValidKeysDetectedException;
@@ -22,7 +24,6 @@ import digital.slovensko.autogram.drivers.TokenDriver;
 import digital.slovensko.autogram.ui.BatchUiResult;
 import digital.slovensko.autogram.ui.UI;
 import digital.slovensko.autogram.util.Logging;
-import eu.europa.esig.dss.model.DSSException;
 import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
 import javafx.application.HostServices;
 import javafx.application.Platform;
@@ -40,7 +41,7 @@ public class GUI implements UI {
     private boolean driverWasAlreadySet = false;
     private final HostServices hostServices;
     private final UserSettings userSettings;
-    private BatchDialogController batchController;
+    private final Map<Batch, BatchDialogController> batchControllers = new HashMap<>();
     private static final boolean DEBUG = false;
     private static Logger logger = LoggerFactory.getLogger(GUI.class);
     private int nWindows = 0;
@@ -52,12 +53,20 @@ public class GUI implements UI {
 
     @Override
     public void startSigning(SigningJob job, Autogram autogram) {
+        // the signing dialog shows only one document, the others would be signed without the user seeing them
+        if (job.isBundle()) {
+            job.onDocumentSignFailed(new BundleNotSupportedException(
+                    "Podpisovanie viacerých dokumentov jedným podpisom zatiaľ nie je v grafickom rozhraní podporované."));
+            return;
+        }
+
         autogram.startVisualization(job);
     }
 
     @Override
     public void startBatch(Batch batch, Autogram autogram, Consumer<SigningKey> callback) {
-        batchController = new BatchDialogController(batch, callback, autogram, this);
+        var batchController = new BatchDialogController(batch, callback, autogram, this);
+        batchControllers.put(batch, batchController);
         var root = GUIUtils.loadFXML(batchController, "batch-dialog.fxml");
 
         var stage = new Stage();
@@ -73,36 +82,25 @@ public class GUI implements UI {
 
     @Override
     public void cancelBatch(Batch batch) {
-        batchController.close();
+        var batchController = batchControllers.remove(batch);
+        if (batchController != null)
+            batchController.close();
         batch.end();
         refreshKeyOnAllJobs();
         enableSigningOnAllJobs();
     }
 
     @Override
-    public void signBatch(SigningJob job, SigningKey key) {
-        assertOnWorkThread();
-        try {
-            job.signWithKeyAndRespond(key);
-            Logging.log("GUI: Signing batch job: " + job.hashCode() + " file " + job.getDocument().getName());
-        } catch (AutogramException e) {
-            job.onDocumentSignFailed(e);
-        } catch (DSSException e) {
-            job.onDocumentSignFailed(AutogramException.createFromDSSException(e));
-        } catch (Exception e) {
-            AutogramException autogramException = new AutogramException("Document signing has failed", "", "", e);
-            job.onDocumentSignFailed(autogramException);
-        }
-        onUIThreadDo(() -> {
-            updateBatch();
-        });
+    public void onBatchDocumentProcessed(Batch batch) {
+        updateBatch();
     }
 
     private void updateBatch() {
-        if (batchController == null)
+        if (batchControllers.isEmpty())
             return;
         assertOnUIThread();
-        batchController.update();
+        batchControllers.values().forEach(BatchDialogController::update);
+        batchControllers.keySet().removeIf(Batch::isEnded);
     }
 
     @Override
@@ -171,10 +169,18 @@ public class GUI implements UI {
 
     @Override
     public void pickKeyAndThen(List<DSSPrivateKeyEntry> keys, Consumer<DSSPrivateKeyEntry> callback) {
+        pickKeyAndThen(keys, callback, () -> {
+        });
+    }
+
+    @Override
+    public void pickKeyAndThen(List<DSSPrivateKeyEntry> keys, Consumer<DSSPrivateKeyEntry> callback,
+            Runnable onCancel) {
         if (keys.isEmpty()) {
             showError(new NoKeysDetectedException());
             refreshKeyOnAllJobs();
             enableSigningOnAllJobs();
+            onCancel.run();
 
             return;
         }
@@ -186,6 +192,7 @@ public class GUI implements UI {
             showError(new NoValidKeysDetectedException());
             refreshKeyOnAllJobs();
             enableSigningOnAllJobs();
+            onCancel.run();
 
             return;
         }
@@ -199,6 +206,7 @@ public class GUI implements UI {
         stage.setOnCloseRequest(e -> {
             refreshKeyOnAllJobs();
             enableSigningOnAllJobs();
+            onCancel.run();
         });
         stage.setResizable(false);
         stage.initModality(Modality.APPLICATION_MODAL);
@@ -207,15 +215,12 @@ public class GUI implements UI {
 
     public void refreshKeyOnAllJobs() {
         jobControllers.values().forEach(SigningDialogController::refreshSigningKey);
-        if (batchController != null) {
-            batchController.refreshSigningKey();
-        }
+        batchControllers.values().forEach(BatchDialogController::refreshSigningKey);
     }
 
     public void enableSigningOnAllJobs() {
         jobControllers.values().forEach(SigningDialogController::enableSigning);
-        if (batchController != null)
-            batchController.enableSigning();
+        batchControllers.values().forEach(BatchDialogController::enableSigning);
     }
 
     @Override
@@ -313,8 +318,8 @@ public class GUI implements UI {
         GUIUtils.hackToForceRelayout(stage);
         setUserFriendlyPositionAndLimits(stage);
 
-        onWorkThreadDo(()
-        -> autogram.checkAndValidateSignatures(visualization.getJob()));
+        onWorkThreadDo(ExecutorRegistry.Pool.VALIDATION,
+                () -> autogram.checkAndValidateSignatures(visualization.getJob()));
     }
 
     @Override
@@ -335,8 +340,7 @@ public class GUI implements UI {
 
     private void disableKeyPicking() {
         jobControllers.values().forEach(SigningDialogController::disableKeyPicking);
-        if (batchController != null)
-            batchController.disableKeyPicking();
+        batchControllers.values().forEach(BatchDialogController::disableKeyPicking);
     }
 
     @Override
@@ -403,8 +407,13 @@ public class GUI implements UI {
 
     @Override
     public void onWorkThreadDo(Runnable callback) {
+        onWorkThreadDo(ExecutorRegistry.Pool.WORK, callback);
+    }
+
+    @Override
+    public void onWorkThreadDo(ExecutorRegistry.Pool pool, Runnable callback) {
         if (Platform.isFxApplicationThread()) {
-            new Thread(callback).start();
+            ExecutorRegistry.getInstance().execute(pool, callback);
         } else {
             callback.run();
         }
@@ -456,8 +465,7 @@ public class GUI implements UI {
 
     public void disableSigning() {
         jobControllers.values().forEach(SigningDialogController::disableSigning);
-        if (batchController != null)
-            batchController.disableSigning();
+        batchControllers.values().forEach(BatchDialogController::disableSigning);
     }
 
     public void resetSigningKey() {
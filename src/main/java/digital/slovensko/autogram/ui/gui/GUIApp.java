@@ -1,11 +1,12 @@
 package digital.slovensko.autogram.ui.gui;
 
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.ExecutorRegistry;
 import digital.slovensko.autogram.core.LaunchParameters;
+import digital.slovensko.autogram.core.PerformanceStats;
 import digital.slovensko.autogram.core.UserSettings;
 import digital.slovensko.autogram.server.AutogramServer;
 import javafx.application.Application;
@@ -15,7 +16,6 @@ import javafx.stage.Stage;
 
 public class GUIApp extends Application {
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
-    private final ExecutorService cachedExecutorService = Executors.newFixedThreadPool(8);
 
     @Override
     public void start(Stage windowStage) throws Exception {
@@ -25,7 +25,9 @@ public class GUIApp extends Application {
 
         Platform.setImplicitExit(false);
         autogram.checkForUpdate();
-        autogram.initializeSignatureValidator(scheduledExecutorService, cachedExecutorService, userSettings.getTrustedList());
+        autogram.initializeSignatureValidator(scheduledExecutorService,
+                ExecutorRegistry.getInstance().get(ExecutorRegistry.Pool.TL), userSettings.getTrustedList());
+        PerformanceStats.scheduleLogging(scheduledExecutorService);
 
         setUserAgentStylesheet(getClass().getResource("idsk.css").toExternalForm());
 
@@ -35,7 +37,7 @@ public class GUIApp extends Application {
         var scene = new Scene(root);
 
         var params = LaunchParameters.fromParameters(getParameters());
-        var server = new AutogramServer(autogram, params.getHost(), params.getPort(), params.isProtocolHttps(), cachedExecutorService);
+        var server = new AutogramServer(autogram, params.getHost(), params.getPort(), params.isProtocolHttps());
 
         if (userSettings.isServerEnabled()) {
             server.start();
@@ -64,7 +66,6 @@ public class GUIApp extends Application {
         if (!scheduledExecutorService.awaitTermination(2, java.util.concurrent.TimeUnit.SECONDS))
             scheduledExecutorService.shutdownNow();
 
-        if (!cachedExecutorService.awaitTermination(2, java.util.concurrent.TimeUnit.SECONDS))
-            cachedExecutorService.shutdownNow();
+        ExecutorRegistry.getInstance().shutdown(2, java.util.concurrent.TimeUnit.SECONDS);
     }
 }
@@ -131,7 +131,7 @@ public class MainMenuController implements SuppressedFocusController {
     }
 
     public void onSettingButtonAction() {
-        var controller = new SettingsDialogController(userSettings);
+        var controller = new SettingsDialogController(userSettings, autogram::refreshDrivers);
         var root = GUIUtils.loadFXML(controller, "settings-dialog.fxml");
 
         var stage = new Stage();
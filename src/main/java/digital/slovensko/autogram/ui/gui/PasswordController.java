@@ -1,5 +1,7 @@
 package digital.slovensko.autogram.ui.gui;
 
+import digital.slovensko.autogram.core.ExecutorRegistry;
+
 import javafx.fxml.FXML;
 import javafx.scene.control.PasswordField;
 import javafx.scene.layout.VBox;
@@ -34,9 +36,8 @@ public class PasswordController {
             passwordField.requestFocus();
         } else {
             GUIUtils.closeWindow(mainBox);
-            new Thread(() -> {
-                callback.accept(passwordField.getText().toCharArray());
-            }).start();
+            var password = passwordField.getText().toCharArray();
+            ExecutorRegistry.getInstance().execute(ExecutorRegistry.Pool.WORK, () -> callback.accept(password));
         }
     }
 }
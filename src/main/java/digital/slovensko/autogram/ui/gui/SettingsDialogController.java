@@ -12,8 +12,10 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -25,6 +27,10 @@ public class SettingsDialogController {
     @FXML
     private ChoiceBox<TokenDriver> driverChoiceBox;
     @FXML
+    private Text keystorePathText;
+    @FXML
+    private Button keystorePathClearButton;
+    @FXML
     private VBox trustedCountriesList;
     @FXML
     private ScrollPane trustedCountriesListScrollPane;
@@ -44,14 +50,20 @@ public class SettingsDialogController {
     private Button closeButton;
 
     private final UserSettings userSettings;
+    private final Runnable onKeystorePathChanged;
 
-    public SettingsDialogController(UserSettings userSettings) {
+    /**
+     * @param onKeystorePathChanged called after the keystore file was picked or cleared, so it is offered right away
+     */
+    public SettingsDialogController(UserSettings userSettings, Runnable onKeystorePathChanged) {
         this.userSettings = userSettings;
+        this.onKeystorePathChanged = onKeystorePathChanged;
     }
 
     public void initialize() {
         initializeSignatureLevelChoiceBox();
         initializeDriverChoiceBox();
+        initializeKeystorePath();
         initializeEn319132CheckBox();
         initializeCorrectDocumentDisplayCheckBox();
         initializeSignatureValidationCheckBox();
@@ -76,16 +88,55 @@ public class SettingsDialogController {
 
     private void initializeDriverChoiceBox() {
         driverChoiceBox.setConverter(new TokenDriverStringConverter());
-        driverChoiceBox.getItems().add(new FakeTokenDriver("Žiadne", null, false, "none"));
-        driverChoiceBox.getItems().addAll(new DefaultDriverDetector().getAvailableDrivers());
-        var defaultDriver = driverChoiceBox.getItems().stream()
-                .filter(d -> d != null && d.getName().equals(userSettings.getDriver())).findFirst();
-        driverChoiceBox.setValue(defaultDriver.orElse(null));
+        fillDriverChoiceBox();
         driverChoiceBox.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
-            userSettings.setDriver(newValue.getName());
+            if (newValue != null)
+                userSettings.setDriver(newValue.getName());
         });
     }
 
+    private void fillDriverChoiceBox() {
+        var defaultDriverName = userSettings.getDriver();
+        var items = new ArrayList<TokenDriver>();
+        items.add(new FakeTokenDriver("Žiadne", null, false, "none"));
+        items.addAll(new DefaultDriverDetector().getAvailableDrivers());
+        driverChoiceBox.getItems().setAll(items);
+
+        var defaultDriver = items.stream().filter(d -> d.getName().equals(defaultDriverName)).findFirst();
+        driverChoiceBox.setValue(defaultDriver.orElse(null));
+    }
+
+    private void initializeKeystorePath() {
+        var keystorePath = userSettings.getKeystorePath();
+        keystorePathText.setText(keystorePath == null ? "Žiadny súbor" : keystorePath);
+        keystorePathClearButton.setVisible(keystorePath != null);
+    }
+
+    public void onKeystorePathButtonAction() {
+        var chooser = new FileChooser();
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Súbor s certifikátom (*.p12, *.pfx, *.jks)", "*.p12", "*.pfx",
+                        "*.jks"),
+                new FileChooser.ExtensionFilter("Všetky súbory", "*.*"));
+        var file = chooser.showOpenDialog(keystorePathText.getScene().getWindow());
+        if (file == null)
+            return;
+
+        userSettings.setKeystorePath(file.getAbsolutePath());
+        onKeystorePathChanged();
+    }
+
+    public void onKeystorePathClearButtonAction() {
+        userSettings.setKeystorePath(null);
+        onKeystorePathChanged();
+    }
+
+    private void onKeystorePathChanged() {
+        initializeKeystorePath();
+        fillDriverChoiceBox();
+        onKeystorePathChanged.run();
+    }
+
     private void initializeBooleanRadios(HBox parent, Consumer<Boolean> consumer, boolean defaultValue, String yesText,
             String noText) {
         var toggleGroup = new ToggleGroup();
@@ -1,5 +1,6 @@
 package digital.slovensko.autogram.ui.gui;
 
+import digital.slovensko.autogram.core.ExecutorRegistry;
 import digital.slovensko.autogram.core.SignatureValidator;
 import eu.europa.esig.dss.validation.reports.Reports;
 import javafx.fxml.FXML;
@@ -55,7 +56,7 @@ public class SignaturesController implements SuppressedFocusController {
 
         renderSignatures();
 
-        gui.onWorkThreadDo(() -> {
+        gui.onWorkThreadDo(ExecutorRegistry.Pool.VALIDATION, () -> {
             signatureValidationReportsHTML = SignatureValidator
                     .getSignatureValidationReportHTML(signatureValidationReports);
             signatureDetailsButton.setVisible(true);
@@ -0,0 +1,73 @@
+package digital.slovensko.autogram.util;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class AppDirectories {
+    private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(PosixFilePermission.OWNER_READ,
+            PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+
+    /**
+     * @return per-user cache directory of the application - %LOCALAPPDATA%\Autogram on Windows,
+     *         ~/Library/Caches/Autogram on macOS and $XDG_CACHE_HOME/autogram (~/.cache/autogram) elsewhere
+     */
+    public static Path getCacheDirectory() {
+        var home = System.getProperty("user.home");
+        var os = System.getProperty("os.name", "generic").toLowerCase();
+
+        if (os.contains("win")) {
+            var localAppData = System.getenv("LOCALAPPDATA");
+            if (localAppData != null && !localAppData.isBlank())
+                return Path.of(localAppData, "Autogram");
+
+            return Path.of(home, "AppData", "Local", "Autogram");
+        }
+
+        if (os.contains("mac") || os.contains("darwin"))
+            return Path.of(home, "Library", "Caches", "Autogram");
+
+        var xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+        if (xdgCacheHome != null && Path.of(xdgCacheHome).isAbsolute())
+            return Path.of(xdgCacheHome, "autogram");
+
+        return Path.of(home, ".cache", "autogram");
+    }
+
+    /**
+     * Creates the directory if it does not exist and restricts it to its owner where the file system has POSIX
+     * permissions.
+     *
+     * @return false if the directory can not be used for private data - it can not be created, it is a symbolic
+     *         link or it belongs to another user
+     */
+    public static boolean ensurePrivateDirectory(Path directory) {
+        try {
+            if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.createDirectories(directory);
+                return Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS);
+            }
+
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS))
+                return false;
+
+            var currentUser = FileSystems.getDefault().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS).equals(currentUser))
+                return false;
+
+            Files.setPosixFilePermissions(directory, OWNER_ONLY);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            Logging.log("Unable to prepare private directory " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
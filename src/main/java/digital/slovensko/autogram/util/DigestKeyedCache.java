@@ -0,0 +1,92 @@
+package digital.slovensko.autogram.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded thread-safe LRU cache of values derived from (possibly large) texts like XSD or XSLT, keyed by SHA-256
+ * digest of the text so that the text itself is not retained.
+ *
+ * Values are computed outside of the lock, so a slow computation does not block lookups of other keys. Two
+ * threads missing the same key at once may both compute it, the first stored value wins.
+ */
+public class DigestKeyedCache<V> {
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+        V load(String text) throws E;
+    }
+
+    private final int maxEntries;
+    private final Map<String, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DigestKeyedCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > DigestKeyedCache.this.maxEntries;
+            }
+        };
+    }
+
+    public <E extends Exception> V get(String text, Loader<V, E> loader) throws E {
+        var key = digest(text);
+        synchronized (this) {
+            var value = entries.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+        }
+
+        misses.incrementAndGet();
+        var value = loader.load(text);
+        synchronized (this) {
+            var existing = entries.putIfAbsent(key, value);
+            return existing != null ? existing : value;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, %d entries", getHits(), getMisses(), size());
+    }
+
+    /**
+     * @return hex encoded SHA-256 digest of UTF-8 encoded text
+     */
+    public static String digest(String text) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            var hex = new StringBuilder(digest.length * 2);
+            for (var b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package digital.slovensko.autogram.util;
+
+import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.model.CommonDocument;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Byte sink which keeps content in memory up to a threshold and spills the rest to a temporary file.
+ *
+ * Used for request payloads so that the memory held per request does not grow with the document size.
+ */
+public class SpooledContent extends OutputStream {
+    public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+    private static final String FILE_PREFIX = "autogram-";
+    private static final String FILE_SUFFIX = ".spool";
+    private static final Duration STALE_FILE_AGE = Duration.ofDays(1);
+
+    private final int memoryThreshold;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private Path file = null;
+    private OutputStream fileStream = null;
+    private long size = 0;
+    private boolean closed = false;
+
+    public SpooledContent() {
+        this(DEFAULT_MEMORY_THRESHOLD);
+    }
+
+    public SpooledContent(int memoryThreshold) {
+        this.memoryThreshold = memoryThreshold;
+    }
+
+    public static SpooledContent readFrom(InputStream inputStream) throws IOException {
+        var content = new SpooledContent();
+        try (inputStream; content) {
+            inputStream.transferTo(content);
+        } catch (IOException e) {
+            content.release();
+            throw e;
+        }
+
+        return content;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("Spooled content is already closed");
+
+        if (fileStream == null && size + len > memoryThreshold)
+            spillToFile();
+
+        if (fileStream != null)
+            fileStream.write(b, off, len);
+        else
+            memory.write(b, off, len);
+
+        size += len;
+    }
+
+    private void spillToFile() throws IOException {
+        // not deleteOnExit, it would keep the path of every spilled request until exit - release deletes the file
+        file = Files.createTempFile(FILE_PREFIX, FILE_SUFFIX);
+        fileStream = new BufferedOutputStream(Files.newOutputStream(file));
+        memory.writeTo(fileStream);
+        memory = null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileStream != null)
+            fileStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        if (fileStream != null)
+            fileStream.close();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    public InputStream openStream() throws IOException {
+        if (isInMemory())
+            return new ByteArrayInputStream(memory.toByteArray());
+
+        return Files.newInputStream(file);
+    }
+
+    /**
+     * Closes the sink and exposes the content as a DSS document - in memory for small payloads, file backed otherwise
+     */
+    public CommonDocument toDocument(String name, MimeType mimeType) throws IOException {
+        close();
+        if (isInMemory())
+            return new InMemoryDocument(memory.toByteArray(), name, mimeType);
+
+        var document = new SpooledFileDocument(this);
+        document.setName(name);
+        document.setMimeType(mimeType);
+        return document;
+    }
+
+    /**
+     * Deletes the backing file if the document was created by {@link #toDocument(String, MimeType)} from spilled
+     * content, does nothing for other documents
+     */
+    public static void release(DSSDocument document) {
+        if (document instanceof SpooledFileDocument spooled)
+            spooled.content.release();
+    }
+
+    /**
+     * Drops the content and deletes the backing file if the content was spilled
+     */
+    public void release() {
+        try {
+            close();
+            if (file != null)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Logging.log("Unable to delete spooled content " + file + ": " + e.getMessage());
+        }
+
+        memory = null;
+    }
+
+    /**
+     * Deletes spool files left in the temporary directory by a process which ended without releasing them
+     */
+    public static void deleteStaleFiles() {
+        deleteStaleFiles(Path.of(System.getProperty("java.io.tmpdir")), STALE_FILE_AGE);
+    }
+
+    /**
+     * Only files older than maxAge are deleted, so files of another running instance are kept
+     */
+    static void deleteStaleFiles(Path directory, Duration maxAge) {
+        var limit = Instant.now().minus(maxAge);
+        try (var files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (var file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(limit))
+                        Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    Logging.log("Unable to delete stale spooled content " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            Logging.log("Unable to list stale spooled content in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static class SpooledFileDocument extends FileDocument {
+        private final SpooledContent content;
+
+        private SpooledFileDocument(SpooledContent content) {
+            super(content.file.toFile());
+            this.content = content;
+        }
+    }
+}
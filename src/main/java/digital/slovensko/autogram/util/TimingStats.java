@@ -0,0 +1,41 @@
+package digital.slovensko.autogram.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count and total duration of a repeated operation
+ */
+public class TimingStats {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records duration since startNanos obtained from System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public double getAverageMillis() {
+        var n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / 1_000_000.0 / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d x %.2f ms", getCount(), getAverageMillis());
+    }
+}
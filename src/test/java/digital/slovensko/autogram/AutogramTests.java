@@ -110,7 +110,7 @@ class AutogramTests {
         }
 
         @Override
-        public void signBatch(SigningJob job, SigningKey key) {
+        public void onBatchDocumentProcessed(Batch batch) {
         }
 
         @Override
@@ -1,5 +1,6 @@
 package digital.slovensko.autogram;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -16,6 +17,7 @@ import digital.slovensko.autogram.core.Responder;
 import digital.slovensko.autogram.core.SignedDocument;
 import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.SigningParameters;
+import digital.slovensko.autogram.core.XsltTemplatesCache;
 import digital.slovensko.autogram.core.errors.AutogramException;
 import digital.slovensko.autogram.core.visualization.DocumentVisualizationBuilder;
 import digital.slovensko.autogram.core.visualization.HTMLVisualization;
@@ -70,6 +72,39 @@ public class TransformationTests {
                 }
         }
 
+        @Test
+        void testRepeatedTransformationReusesCompiledTemplates() throws IOException, ParserConfigurationException,
+                        SAXException, TransformerException {
+                var transformation = new String(this.getClass().getResourceAsStream(
+                                "crystal_test_data/PovolenieZdravotnictvo.html.xslt")
+                                .readAllBytes());
+
+                var params = new SigningParameters(SignatureLevel.XAdES_BASELINE_B,
+                                ASiCContainerType.ASiC_E, null, SignaturePackaging.ENVELOPING,
+                                DigestAlgorithm.SHA256, false, CanonicalizationMethod.INCLUSIVE,
+                                CanonicalizationMethod.INCLUSIVE, CanonicalizationMethod.INCLUSIVE,
+                                null, transformation, "id1/asa", false, 800);
+
+                String firstHtml = null;
+                for (int i = 0; i < 2; i++) {
+                        var document = new InMemoryDocument(
+                                        this.getClass().getResourceAsStream(
+                                                        "crystal_test_data/rozhodnutie_X4564-2.xml"),
+                                        "rozhodnutie_X4564-2.xml");
+                        var misses = XsltTemplatesCache.getCache().getMisses();
+
+                        var html = ((HTMLVisualization) DocumentVisualizationBuilder
+                                        .fromJob(new SigningJob(document, params, dummyResponder))).getDocument();
+
+                        if (firstHtml == null) {
+                                firstHtml = html;
+                        } else {
+                                assertEquals(misses, XsltTemplatesCache.getCache().getMisses());
+                                assertEquals(firstHtml, html);
+                        }
+                }
+        }
+
         // @Test
         // void testSigningJobTransformFo() throws IOException,
         // ParserConfigurationException,
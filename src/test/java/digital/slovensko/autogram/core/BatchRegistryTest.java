@@ -0,0 +1,58 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.BatchConflictException;
+import digital.slovensko.autogram.core.errors.BatchInvalidIdException;
+import digital.slovensko.autogram.core.errors.BatchNotStartedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class BatchRegistryTest {
+    @Test
+    void testBatchesAreIndependent() {
+        var registry = new BatchRegistry(0, Duration.ofMinutes(10).toMillis());
+        var first = registry.register(new Batch(1));
+        var second = registry.register(new Batch(2));
+
+        Assertions.assertSame(first, registry.get(first.getId()));
+        Assertions.assertSame(second, registry.get(second.getId()));
+
+        first.end();
+        Assertions.assertSame(first, registry.get(first.getId()));
+        Assertions.assertFalse(second.isEnded());
+    }
+
+    @Test
+    void testUnknownBatch() {
+        var registry = new BatchRegistry(0, Duration.ofMinutes(10).toMillis());
+        Assertions.assertThrows(BatchNotStartedException.class, () -> registry.get("unknown"));
+
+        registry.register(new Batch(1));
+        Assertions.assertThrows(BatchInvalidIdException.class, () -> registry.get("unknown"));
+        Assertions.assertThrows(BatchInvalidIdException.class, () -> registry.get(null));
+    }
+
+    @Test
+    void testActiveBatchesAreLimited() {
+        var registry = new BatchRegistry(2, Duration.ofMinutes(10).toMillis());
+        var first = registry.register(new Batch(1));
+        registry.register(new Batch(1));
+
+        Assertions.assertThrows(BatchConflictException.class, () -> registry.register(new Batch(1)));
+
+        first.end();
+        Assertions.assertDoesNotThrow(() -> registry.register(new Batch(1)));
+    }
+
+    @Test
+    void testExpiredBatchesAreSwept() {
+        // negative retention sweeps batches up to 11 minutes before their expiration, i.e. all new ones
+        var registry = new BatchRegistry(0, -Duration.ofMinutes(11).toMillis());
+        var batch = registry.register(new Batch(1));
+        Assertions.assertEquals(1, registry.size());
+
+        Assertions.assertThrows(BatchNotStartedException.class, () -> registry.get(batch.getId()));
+        Assertions.assertEquals(0, registry.size());
+    }
+}
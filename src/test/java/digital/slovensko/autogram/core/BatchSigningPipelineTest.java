@@ -0,0 +1,206 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BatchSigningPipelineTest {
+    private static final int LOOK_AHEAD = 3;
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(4);
+
+    /**
+     * Slow token which records how many signatures run at once and how many documents were prepared meanwhile
+     */
+    private static class ObservedSigningKey extends SigningKey {
+        private final AtomicInteger signing = new AtomicInteger();
+        private final AtomicInteger maxSigning = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private BatchSigningPipeline pipeline;
+
+        ObservedSigningKey(Pkcs12SignatureToken token) {
+            super(token, token.getKeys().get(0));
+        }
+
+        @Override
+        protected SignatureValue signOnToken(ToBeSigned dataToSign, DigestAlgorithm algo) {
+            maxSigning.accumulateAndGet(signing.incrementAndGet(), Math::max);
+            maxInFlight.accumulateAndGet(pipeline.getInFlightCount(), Math::max);
+            try {
+                Thread.sleep(20);
+                return super.signOnToken(dataToSign, algo);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                signing.decrementAndGet();
+            }
+        }
+    }
+
+    private static class CollectingResponder extends Responder {
+        private final ConcurrentHashMap<String, Object> results;
+        private final String name;
+
+        CollectingResponder(ConcurrentHashMap<String, Object> results, String name) {
+            this.results = results;
+            this.name = name;
+        }
+
+        @Override
+        public void onDocumentSigned(SignedDocument signedDocument) {
+            results.put(name, signedDocument);
+        }
+
+        @Override
+        public void onDocumentSignFailed(AutogramException error) {
+            results.put(name, error);
+        }
+    }
+
+    private static ObservedSigningKey createKey() throws IOException {
+        var keystore = Objects.requireNonNull(BatchSigningPipelineTest.class.getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        return new ObservedSigningKey(new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray())));
+    }
+
+    @AfterEach
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    void testTokenSignsOneDocumentAtATimeWithBoundedLookAhead() throws Exception {
+        var key = createKey();
+        var pipeline = new BatchSigningPipeline(LOOK_AHEAD, workers);
+        key.pipeline = pipeline;
+
+        var documents = 12;
+        var results = new ConcurrentHashMap<String, Object>();
+        var processed = new CountDownLatch(documents);
+        for (int i = 0; i < documents; i++) {
+            var name = "document-" + i + ".txt";
+            var document = new InMemoryDocument(("content " + i).getBytes(StandardCharsets.UTF_8), name);
+            var job = new SigningJob(document, SigningParameters.buildForASiCWithCAdES(name, false),
+                    new CollectingResponder(results, name));
+            pipeline.submit(job, key, processed::countDown);
+        }
+
+        Assertions.assertTrue(processed.await(60, TimeUnit.SECONDS));
+        Assertions.assertEquals(documents, results.size());
+        Assertions.assertTrue(results.values().stream().allMatch(SignedDocument.class::isInstance));
+        Assertions.assertEquals(1, key.maxSigning.get());
+        Assertions.assertTrue(key.maxInFlight.get() <= LOOK_AHEAD);
+        Assertions.assertEquals(0, pipeline.getInFlightCount());
+        Assertions.assertEquals(0, pipeline.getWaitingCount());
+    }
+
+    @Test
+    void testPoolTokensSignInParallelButEachOneAtATime() throws Exception {
+        var keys = List.of(createKey(), createKey());
+        var pool = new SigningKeyPool(List.of(keys.get(0), keys.get(1)));
+        var pipeline = new BatchSigningPipeline(LOOK_AHEAD, workers);
+        keys.forEach(key -> key.pipeline = pipeline);
+
+        var documents = 12;
+        var results = new ConcurrentHashMap<String, Object>();
+        var processed = new CountDownLatch(documents);
+        for (int i = 0; i < documents; i++) {
+            var name = "document-" + i + ".txt";
+            var document = new InMemoryDocument(("content " + i).getBytes(StandardCharsets.UTF_8), name);
+            var job = new SigningJob(document, SigningParameters.buildForASiCWithCAdES(name, false),
+                    new CollectingResponder(results, name));
+            pipeline.submit(job, pool, processed::countDown);
+        }
+
+        Assertions.assertTrue(processed.await(60, TimeUnit.SECONDS));
+        Assertions.assertTrue(results.values().stream().allMatch(SignedDocument.class::isInstance));
+        for (var key : keys)
+            Assertions.assertEquals(1, key.maxSigning.get());
+        for (var member : pool.getMembers()) {
+            Assertions.assertTrue(member.getSignedCount() > 0);
+            Assertions.assertEquals(0, member.getPendingCount());
+        }
+        Assertions.assertEquals(documents, pipeline.getSignedCount());
+    }
+
+    @Test
+    void testFailedPreparationDoesNotStopPipeline() throws Exception {
+        var key = createKey();
+        var pipeline = new BatchSigningPipeline(1, workers);
+        key.pipeline = pipeline;
+
+        var results = new ConcurrentHashMap<String, Object>();
+        var processed = new CountDownLatch(2);
+        var notPdf = new InMemoryDocument("not a pdf".getBytes(StandardCharsets.UTF_8), "broken.pdf");
+        pipeline.submit(new SigningJob(notPdf, SigningParameters.buildForPDF("broken.pdf", false, false),
+                new CollectingResponder(results, "broken.pdf")), key, processed::countDown);
+
+        var valid = new InMemoryDocument("valid".getBytes(StandardCharsets.UTF_8), "valid.txt");
+        pipeline.submit(new SigningJob(valid, SigningParameters.buildForASiCWithCAdES("valid.txt", false),
+                new CollectingResponder(results, "valid.txt")), key, processed::countDown);
+
+        Assertions.assertTrue(processed.await(60, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(AutogramException.class, results.get("broken.pdf"));
+        Assertions.assertInstanceOf(SignedDocument.class, results.get("valid.txt"));
+    }
+
+    @Test
+    void testTokenSigningDoesNotHoldPipelineThread() throws Exception {
+        var keystore = Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        var signingStarted = new CountDownLatch(1);
+        var tokenReleased = new CountDownLatch(1);
+        var key = new SigningKey(token, token.getKeys().get(0)) {
+            @Override
+            protected SignatureValue signOnToken(ToBeSigned dataToSign, DigestAlgorithm algo) {
+                signingStarted.countDown();
+                try {
+                    tokenReleased.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+
+                return super.signOnToken(dataToSign, algo);
+            }
+        };
+
+        var singleWorker = Executors.newSingleThreadExecutor();
+        try {
+            var pipeline = new BatchSigningPipeline(1, singleWorker);
+            var results = new ConcurrentHashMap<String, Object>();
+            var processed = new CountDownLatch(1);
+            var document = new InMemoryDocument("content".getBytes(StandardCharsets.UTF_8), "document.txt");
+            pipeline.submit(new SigningJob(document, SigningParameters.buildForASiCWithCAdES("document.txt", false),
+                    new CollectingResponder(results, "document.txt")), key, processed::countDown);
+
+            Assertions.assertTrue(signingStarted.await(30, TimeUnit.SECONDS));
+            // the only pipeline thread is free while the token signs
+            Assertions.assertDoesNotThrow(() -> singleWorker.submit(() -> {
+            }).get(5, TimeUnit.SECONDS));
+
+            tokenReleased.countDown();
+            Assertions.assertTrue(processed.await(30, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(SignedDocument.class, results.get("document.txt"));
+        } finally {
+            tokenReleased.countDown();
+            singleWorker.shutdownNow();
+        }
+    }
+}
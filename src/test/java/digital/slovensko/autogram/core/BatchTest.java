@@ -0,0 +1,103 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BatchTest {
+    private static final int DOCUMENTS = 200;
+
+    private static class NoopResponder extends Responder {
+        @Override
+        public void onDocumentSigned(SignedDocument signedDocument) {
+        }
+
+        @Override
+        public void onDocumentSignFailed(AutogramException error) {
+        }
+    }
+
+    @Test
+    void testConcurrentJobsAreCountedExactly() throws Exception {
+        var batch = new Batch(DOCUMENTS);
+        batch.start(null);
+
+        var executor = Executors.newFixedThreadPool(8);
+        var futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            var index = i;
+            futures.add(executor.submit(() -> {
+                var responder = new ResponderInBatch(new NoopResponder(), batch);
+                var job = new SigningJob(new InMemoryDocument(new byte[] { 1 }, "document-" + index + ".txt"), null,
+                        responder);
+                batch.addJob(batch.getBatchId(), job);
+
+                if (index % 4 == 0)
+                    responder.onDocumentSignFailed(new AutogramException("Failed", "", ""));
+                else
+                    responder.onDocumentSigned(null);
+            }));
+        }
+        for (var future : futures)
+            future.get();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(DOCUMENTS, batch.getAddedDocumentsCount());
+        Assertions.assertEquals(DOCUMENTS / 4, batch.getFailedDocumentsCount());
+        Assertions.assertEquals(DOCUMENTS - DOCUMENTS / 4, batch.getSuccessfulDocumentsCount());
+        Assertions.assertTrue(batch.isAllProcessed());
+
+        var documents = batch.getDocuments();
+        Assertions.assertEquals(DOCUMENTS, documents.size());
+        Assertions.assertTrue(documents.stream().noneMatch(d -> d.getState() == Batch.DocumentState.PENDING));
+        Assertions.assertEquals(DOCUMENTS / 4,
+                documents.stream().filter(d -> d.getState() == Batch.DocumentState.FAILED && d.getError() != null).count());
+    }
+
+    @Test
+    void testMoreJobsThanDeclaredAreRejected() {
+        var batch = new Batch(1);
+        batch.start(null);
+        var job = new SigningJob(new InMemoryDocument(new byte[] { 1 }, "a.txt"), null, new NoopResponder());
+
+        batch.addJob(batch.getBatchId(), job);
+        Assertions.assertThrows(IllegalAccessError.class, () -> batch.addJob(batch.getBatchId(), job));
+        Assertions.assertEquals(1, batch.getAddedDocumentsCount());
+    }
+
+    @Test
+    void testEndingBatchClosesItsSigningKeyOnce() throws Exception {
+        var keystore = Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        var closed = new CountDownLatch(1);
+        var closes = new AtomicInteger();
+        var key = new SigningKey(token, token.getKeys().get(0)) {
+            @Override
+            protected void closeToken() {
+                closes.incrementAndGet();
+                super.closeToken();
+                closed.countDown();
+            }
+        };
+
+        var batch = new Batch(1);
+        batch.start(key);
+        batch.end();
+        batch.end();
+
+        Assertions.assertTrue(closed.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, closes.get());
+    }
+}
@@ -0,0 +1,100 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.BundleNotSupportedException;
+import eu.europa.esig.dss.model.CommonDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.ZipInputStream;
+
+class BundleSigningTest {
+    private SigningKey key;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        var keystore = Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        key = new SigningKey(token, token.getKeys().get(0));
+    }
+
+    @Test
+    void testXAdESBundleIsSignedOnceIntoOneContainer() throws Exception {
+        var result = sign(documents("a.txt", "b.xml", "c.pdf"), SigningParameters.buildForASiCWithXAdES("bundle", false));
+
+        var entries = containerEntries((SignedDocument) result);
+        Assertions.assertTrue(entries.containsAll(List.of("a.txt", "b.xml", "c.pdf")));
+        Assertions.assertEquals(1, entries.stream().filter(name -> name.startsWith("META-INF/signatures")).count());
+        Assertions.assertEquals(1, key.getSigningStats().getCount());
+    }
+
+    @Test
+    void testCAdESBundleIsSignedOnceIntoOneContainer() throws Exception {
+        var result = sign(documents("a.txt", "b.txt"), SigningParameters.buildForASiCWithCAdES("bundle", false));
+
+        var entries = containerEntries((SignedDocument) result);
+        Assertions.assertTrue(entries.containsAll(List.of("a.txt", "b.txt")));
+        Assertions.assertTrue(entries.contains("META-INF/ASiCManifest001.xml"));
+        Assertions.assertEquals(1, key.getSigningStats().getCount());
+    }
+
+    @Test
+    void testDuplicateFilenamesAreRejected() {
+        var parameters = SigningParameters.buildForASiCWithXAdES("bundle", false);
+
+        Assertions.assertThrows(BundleNotSupportedException.class, () -> sign(documents("a.txt", "a.txt"), parameters));
+        Assertions.assertEquals(0, key.getSigningStats().getCount());
+    }
+
+    @Test
+    void testNonContainerSignatureIsRejected() {
+        var parameters = SigningParameters.buildForPDF("a.pdf", false, false);
+
+        Assertions.assertThrows(BundleNotSupportedException.class, () -> sign(documents("a.pdf", "b.pdf"), parameters));
+    }
+
+    private Object sign(List<CommonDocument> documents, SigningParameters parameters) throws InterruptedException {
+        var results = new ArrayList<>();
+        var job = new SigningJob(documents, parameters, new Responder() {
+            @Override
+            public void onDocumentSigned(SignedDocument signedDocument) {
+                results.add(signedDocument);
+            }
+
+            @Override
+            public void onDocumentSignFailed(AutogramException error) {
+                results.add(error);
+            }
+        });
+
+        job.signWithKeyAndRespond(key);
+        Assertions.assertEquals(1, results.size());
+        return results.get(0);
+    }
+
+    private static List<CommonDocument> documents(String... names) {
+        var documents = new ArrayList<CommonDocument>();
+        for (var name : names)
+            documents.add(new InMemoryDocument(("content of " + name).getBytes(StandardCharsets.UTF_8), name));
+
+        return documents;
+    }
+
+    private static List<String> containerEntries(SignedDocument signedDocument) throws Exception {
+        var entries = new ArrayList<String>();
+        try (var zip = new ZipInputStream(signedDocument.getDocument().openStream())) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry())
+                entries.add(entry.getName());
+        }
+
+        return entries;
+    }
+}
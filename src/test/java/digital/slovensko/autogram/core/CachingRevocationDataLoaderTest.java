@@ -0,0 +1,156 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.util.DigestKeyedCache;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.KeyPairGenerator;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingRevocationDataLoaderTest {
+    private static final String CRL_URL = "http://crl.example.com/ca.crl";
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Stand-in for the network, counts downloads
+     */
+    private static class StaticDataLoader implements DataLoader {
+        private final byte[] data;
+        private final AtomicInteger downloads = new AtomicInteger();
+
+        StaticDataLoader(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public byte[] get(String url) {
+            downloads.incrementAndGet();
+            return data;
+        }
+
+        @Override
+        public DataAndUrl get(List<String> urlStrings) {
+            return new DataAndUrl(urlStrings.get(0), get(urlStrings.get(0)));
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public byte[] get(String url, boolean refresh) {
+            return get(url);
+        }
+
+        @Override
+        public byte[] post(String url, byte[] content) {
+            return get(url);
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+        }
+    }
+
+    private static byte[] crl(Instant thisUpdate, Instant nextUpdate) throws Exception {
+        var keyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        var builder = new X509v2CRLBuilder(new X500Name("CN=Test CA"), Date.from(thisUpdate));
+        if (nextUpdate != null)
+            builder.setNextUpdate(Date.from(nextUpdate));
+
+        return builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate())).getEncoded();
+    }
+
+    private CachingRevocationDataLoader loader(DataLoader dataLoader, Instant now) {
+        return new CachingRevocationDataLoader(dataLoader, CachingRevocationDataLoader.RevocationType.CRL,
+                directory.resolve("crl"),
+                1024 * 1024, Duration.ofMinutes(5), Duration.ofDays(7), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testCRLIsServedFromCacheUntilNextUpdate() throws Exception {
+        var network = new StaticDataLoader(crl(NOW.minusSeconds(60), NOW.plus(Duration.ofHours(1))));
+
+        var data = loader(network, NOW).get(List.of(CRL_URL)).getData();
+        var loader = loader(network, NOW.plus(Duration.ofMinutes(30)));
+
+        Assertions.assertArrayEquals(data, loader.get(CRL_URL));
+        Assertions.assertArrayEquals(data, loader.get(CRL_URL));
+        Assertions.assertEquals(1, network.downloads.get());
+        Assertions.assertEquals(2, loader.getHits());
+
+        loader(network, NOW.plus(Duration.ofHours(2))).get(CRL_URL);
+        Assertions.assertEquals(2, network.downloads.get());
+    }
+
+    @Test
+    void testCRLWithoutNextUpdateIsKeptForDefaultValidity() throws Exception {
+        var network = new StaticDataLoader(crl(NOW, null));
+        var loader = loader(network, NOW);
+
+        loader.get(CRL_URL);
+        loader.get(CRL_URL);
+        Assertions.assertEquals(1, network.downloads.get());
+
+        loader(network, NOW.plus(Duration.ofMinutes(6))).get(CRL_URL);
+        Assertions.assertEquals(2, network.downloads.get());
+    }
+
+    @Test
+    void testRefreshAndUnparseableDataBypassCache() throws Exception {
+        var network = new StaticDataLoader(crl(NOW, NOW.plus(Duration.ofHours(1))));
+        var loader = loader(network, NOW);
+        loader.get(CRL_URL);
+        loader.get(CRL_URL, true);
+        Assertions.assertEquals(2, network.downloads.get());
+
+        var invalid = new StaticDataLoader(new byte[] { 1, 2, 3 });
+        var invalidLoader = loader(invalid, NOW);
+        invalidLoader.get("http://crl.example.com/invalid.crl");
+        invalidLoader.get("http://crl.example.com/invalid.crl");
+        Assertions.assertEquals(2, invalid.downloads.get());
+    }
+
+    @Test
+    void testValidityOfDataOnDiskIsReadFromResponse() throws Exception {
+        var cachedFile = directory.resolve("crl").resolve(DigestKeyedCache.digest("CRL\n" + CRL_URL));
+        var network = new StaticDataLoader(crl(NOW, NOW.plus(Duration.ofHours(1))));
+        var loader = loader(network, NOW);
+        loader.get(CRL_URL);
+
+        // nextUpdate a year after thisUpdate is capped at maximum validity after thisUpdate
+        Files.write(cachedFile, crl(NOW.minus(Duration.ofDays(8)), NOW.plus(Duration.ofDays(365))));
+        loader(network, NOW).get(CRL_URL);
+        Assertions.assertEquals(2, network.downloads.get());
+
+        var planted = crl(NOW.minusSeconds(60), NOW.plus(Duration.ofHours(1)));
+        Files.write(cachedFile, planted);
+        Assertions.assertArrayEquals(planted, loader(network, NOW).get(CRL_URL));
+        Assertions.assertEquals(2, network.downloads.get());
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testDiskCacheDirectoryIsPrivate() throws Exception {
+        loader(new StaticDataLoader(crl(NOW, NOW.plus(Duration.ofHours(1)))), NOW).get(CRL_URL);
+
+        Assertions.assertEquals("rwx------",
+                PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.resolve("crl"))));
+    }
+}
@@ -0,0 +1,40 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.ParallelismIsNotValidException;
+import digital.slovensko.autogram.core.errors.SlotIdIsNotANumberException;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class CliParametersTest {
+    private static final Options options = new Options().addOption(null, "parallel", true, "")
+            .addOption(null, "slot-id", true, "");
+
+    private static CliParameters parse(String... args) throws ParseException {
+        return new CliParameters(new DefaultParser().parse(options, args));
+    }
+
+    @Test
+    void testParallelismDefaultsToOne() throws ParseException {
+        Assertions.assertEquals(1, parse().getParallelism());
+        Assertions.assertEquals(4, parse("--parallel", "4").getParallelism());
+    }
+
+    @Test
+    void testInvalidParallelismThrows() {
+        Assertions.assertThrows(ParallelismIsNotValidException.class, () -> parse("--parallel", "0"));
+        Assertions.assertThrows(ParallelismIsNotValidException.class, () -> parse("--parallel", "many"));
+    }
+
+    @Test
+    void testSlotIdsAreCommaSeparated() throws ParseException {
+        Assertions.assertEquals(List.of(-1), parse().getSlotIds());
+        Assertions.assertEquals(List.of(0, 1, 3), parse("--slot-id", "0, 1,3").getSlotIds());
+        Assertions.assertEquals(0, parse("--slot-id", "0,1").getSlotId());
+        Assertions.assertThrows(SlotIdIsNotANumberException.class, () -> parse("--slot-id", "0,x"));
+    }
+}
@@ -0,0 +1,58 @@
+package digital.slovensko.autogram.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class ExecutorRegistryTest {
+    private final ExecutorRegistry registry = ExecutorRegistry.getInstance();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        registry.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testGaugesTrackQueuedAndActiveTasks() throws InterruptedException {
+        var started = new CountDownLatch(2);
+        var release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // visualization pool has 2 threads, third task has to wait in queue
+        for (int i = 0; i < 3; i++)
+            registry.execute(ExecutorRegistry.Pool.VISUALIZATION, blocking);
+
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, registry.getActiveCount(ExecutorRegistry.Pool.VISUALIZATION));
+        Assertions.assertEquals(1, registry.getQueueDepth(ExecutorRegistry.Pool.VISUALIZATION));
+        Assertions.assertEquals(0, registry.getActiveCount(ExecutorRegistry.Pool.SIGNING));
+
+        release.countDown();
+    }
+
+    @Test
+    void testShutDownPoolIsRecreated() throws InterruptedException {
+        var executor = registry.get(ExecutorRegistry.Pool.WORK);
+        registry.shutdown(1, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(executor.isShutdown());
+        Assertions.assertFalse(registry.get(ExecutorRegistry.Pool.WORK).isShutdown());
+    }
+
+    @Test
+    void testSigningPoolIsSizedToProcessors() {
+        Assertions.assertEquals(Runtime.getRuntime().availableProcessors(),
+                ExecutorRegistry.getPoolSize(ExecutorRegistry.Pool.SIGNING));
+        Assertions.assertEquals(2, ExecutorRegistry.getPoolSize(ExecutorRegistry.Pool.VISUALIZATION));
+    }
+}
@@ -0,0 +1,21 @@
+package digital.slovensko.autogram.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PerformanceStatsTest {
+    private static final String XSD = """
+            <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema">
+                <xs:element name="stats" type="xs:string"/>
+            </xs:schema>""";
+
+    @Test
+    void testCacheCountersAreDescribed() throws Exception {
+        XsdSchemaCache.getSchema(XSD);
+        XsdSchemaCache.getSchema(XSD);
+
+        var cache = XsdSchemaCache.getCache();
+        Assertions.assertTrue(cache.getHits() >= 1);
+        Assertions.assertTrue(PerformanceStats.describe().contains("xsd cache: " + cache));
+    }
+}
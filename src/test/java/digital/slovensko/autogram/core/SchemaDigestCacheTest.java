@@ -0,0 +1,26 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+
+class SchemaDigestCacheTest {
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:element name=\"a\"/></xs:schema>";
+
+    @Test
+    void testDigestIsComputedOncePerMethodAndAlgorithm() {
+        var expected = SchemaDigestCache.computeDigest(CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA256, XSD);
+
+        Assertions.assertEquals(expected, SchemaDigestCache.getDigest(CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA256, XSD));
+        var misses = SchemaDigestCache.getCache().getMisses();
+        Assertions.assertEquals(expected, SchemaDigestCache.getDigest(CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA256, XSD));
+        Assertions.assertEquals(misses, SchemaDigestCache.getCache().getMisses());
+
+        Assertions.assertNotEquals(expected, SchemaDigestCache.getDigest(CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA512, XSD));
+        Assertions.assertEquals(misses + 1, SchemaDigestCache.getCache().getMisses());
+        SchemaDigestCache.getDigest(CanonicalizationMethod.EXCLUSIVE, DigestAlgorithm.SHA256, XSD);
+        Assertions.assertEquals(misses + 2, SchemaDigestCache.getCache().getMisses());
+    }
+}
@@ -0,0 +1,84 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.util.TimingStats;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import eu.europa.esig.dss.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.xades.XAdESSignatureParameters;
+import eu.europa.esig.dss.xades.signature.XAdESService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.Objects;
+
+/**
+ * Per-document overhead of constructing DSS services for every job compared to the shared ones.
+ * Every measurement gets its own document and parameters so neither variant reuses digests computed by the other, the
+ * variant measured first alternates between iterations.
+ * Run with mvn test -P benchmark
+ */
+@Tag("Benchmark")
+class SignatureServiceBenchmark {
+    private static final int WARMUP = 100;
+    private static final int ITERATIONS = 500;
+
+    private static XAdESSignatureParameters createParameters(DSSPrivateKeyEntry key) {
+        var parameters = SigningParameters.buildForASiCWithXAdES("document.xml", false).getXAdESSignatureParameters();
+        parameters.setSigningCertificate(key.getCertificate());
+        parameters.setSignWithExpiredCertificate(true);
+        return parameters;
+    }
+
+    private static InMemoryDocument createDocument(int iteration) {
+        return new InMemoryDocument(("<a>benchmark " + iteration + "</a>").getBytes(StandardCharsets.UTF_8),
+                "document.xml");
+    }
+
+    private static void measure(TimingStats stats, boolean record, Runnable task) {
+        var start = System.nanoTime();
+        task.run();
+        if (record)
+            stats.recordSince(start);
+    }
+
+    @Test
+    void benchmarkServiceConstruction(TestReporter reporter) throws Exception {
+        var keystore = Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        var key = token.getKeys().get(0);
+
+        var perJob = new TimingStats();
+        var shared = new TimingStats();
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            var record = i >= WARMUP;
+            var perJobDocument = createDocument(i);
+            var perJobParameters = createParameters(key);
+            var sharedDocument = createDocument(i);
+            var sharedParameters = createParameters(key);
+
+            Runnable perJobRun = () -> measure(perJob, record,
+                    () -> new XAdESService(new CommonCertificateVerifier()).getDataToSign(perJobDocument, perJobParameters));
+            Runnable sharedRun = () -> measure(shared, record,
+                    () -> SignatureServiceProvider.getInstance().getXAdESService().getDataToSign(sharedDocument,
+                            sharedParameters));
+
+            if (i % 2 == 0) {
+                perJobRun.run();
+                sharedRun.run();
+            } else {
+                sharedRun.run();
+                perJobRun.run();
+            }
+        }
+
+        reporter.publishEntry("XAdES getDataToSign with service per job", perJob.toString());
+        reporter.publishEntry("XAdES getDataToSign with shared service", shared.toString());
+        Assertions.assertEquals(ITERATIONS, perJob.getCount());
+        Assertions.assertEquals(ITERATIONS, shared.getCount());
+    }
+}
@@ -0,0 +1,69 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class SignatureServiceProviderTest {
+    @Test
+    void testServicesAreShared() {
+        var provider = SignatureServiceProvider.getInstance();
+
+        Assertions.assertSame(provider, SignatureServiceProvider.getInstance());
+        Assertions.assertSame(provider.getXAdESService(), SignatureServiceProvider.getInstance().getXAdESService());
+        Assertions.assertSame(provider.getASiCWithCAdESService(),
+                SignatureServiceProvider.getInstance().getASiCWithCAdESService());
+    }
+
+    @Test
+    void testSharedServicesSignConcurrently() throws Exception {
+        var keystore = Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        var key = new SigningKey(token, token.getKeys().get(0));
+
+        var results = new ConcurrentHashMap<String, Object>();
+        var executor = Executors.newFixedThreadPool(8);
+        var futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 32; i++) {
+            var name = "document-" + i + ".txt";
+            var parameters = i % 2 == 0 ? SigningParameters.buildForASiCWithXAdES(name, false)
+                    : SigningParameters.buildForASiCWithCAdES(name, false);
+            var document = new InMemoryDocument(("content " + i).getBytes(StandardCharsets.UTF_8), name);
+            var job = new SigningJob(document, parameters, new Responder() {
+                @Override
+                public void onDocumentSigned(SignedDocument signedDocument) {
+                    results.put(name, signedDocument);
+                }
+
+                @Override
+                public void onDocumentSignFailed(AutogramException error) {
+                    results.put(name, error);
+                }
+            });
+
+            futures.add(executor.submit(() -> {
+                job.signWithKeyAndRespond(key);
+                return null;
+            }));
+        }
+
+        for (var future : futures)
+            future.get();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(32, results.size());
+        Assertions.assertTrue(results.values().stream().allMatch(SignedDocument.class::isInstance));
+    }
+}
@@ -0,0 +1,37 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import eu.europa.esig.dss.enumerations.ASiCContainerType;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.enumerations.SignaturePackaging;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.Objects;
+
+import javax.xml.stream.XMLStreamException;
+
+class SigningJobTransformationTest {
+    @Test
+    void testMalformedTransformationFailsDatacontainerJob() throws Exception {
+        var keystore = Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        var key = new SigningKey(token, token.getKeys().get(0));
+
+        var parameters = new SigningParameters(SignatureLevel.XAdES_BASELINE_B, ASiCContainerType.ASiC_E,
+                "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1", SignaturePackaging.ENVELOPING,
+                DigestAlgorithm.SHA256, false, null, null, null, "<xs:schema/>", "<xsl:stylesheet", "id", false, 640);
+        var document = new InMemoryDocument("<a/>".getBytes(StandardCharsets.UTF_8), "a.xml",
+                AutogramMimeType.APPLICATION_XML);
+        var job = new SigningJob(document, parameters, null);
+
+        var e = Assertions.assertThrows(AutogramException.class, () -> job.signWithKeyAndRespond(key));
+        Assertions.assertEquals(0, key.getSigningStats().getCount());
+        Assertions.assertInstanceOf(XMLStreamException.class, e.getCause());
+    }
+}
@@ -0,0 +1,143 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.enumerations.EncryptionAlgorithm;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+class SigningKeyPoolTest {
+    private static List<SigningKey> createKeys(int count) throws IOException {
+        var keystore = Objects.requireNonNull(SigningKeyPoolTest.class.getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var keys = new ArrayList<SigningKey>();
+        for (int i = 0; i < count; i++) {
+            var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+            keys.add(new SigningKey(token, token.getKeys().get(0)));
+        }
+
+        return keys;
+    }
+
+    private static DSSPrivateKeyEntry entry(KeyPair keyPair, String subject, String issuer, int keyUsage,
+            Instant notAfter) throws Exception {
+        var builder = new JcaX509v3CertificateBuilder(new X500Name(issuer), BigInteger.valueOf(System.nanoTime()),
+                Date.from(Instant.now().minus(Duration.ofDays(1))), Date.from(notAfter), new X500Name(subject),
+                keyPair.getPublic());
+        builder.addExtension(Extension.keyUsage, true, new KeyUsage(keyUsage));
+        var certificate = new JcaX509CertificateConverter().getCertificate(
+                builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate())));
+
+        return new DSSPrivateKeyEntry() {
+            @Override
+            public CertificateToken getCertificate() {
+                return new CertificateToken(certificate);
+            }
+
+            @Override
+            public CertificateToken[] getCertificateChain() {
+                return new CertificateToken[] { getCertificate() };
+            }
+
+            @Override
+            public EncryptionAlgorithm getEncryptionAlgorithm() {
+                return EncryptionAlgorithm.ECDSA;
+            }
+        };
+    }
+
+    @Test
+    void testEquivalentKeyOfAnotherTokenIsFoundByPublicKeyThenByIssuerAndKeyUsage() throws Exception {
+        var generator = KeyPairGenerator.getInstance("EC");
+        var pickedKeyPair = generator.generateKeyPair();
+        var seal = "CN=Seal,O=Office";
+        var ca = "CN=Qualified CA";
+        var otherCa = "CN=Other CA";
+        var usage = KeyUsage.nonRepudiation;
+        var valid = Instant.now().plus(Duration.ofDays(365));
+
+        var picked = entry(pickedKeyPair, seal, ca, usage, valid);
+        var sameKey = entry(pickedKeyPair, seal, ca, usage, valid);
+        var otherCard = entry(generator.generateKeyPair(), seal, ca, usage, valid);
+        var otherIssuer = entry(generator.generateKeyPair(), seal, otherCa, usage, valid);
+        var otherUsage = entry(generator.generateKeyPair(), seal, ca, KeyUsage.digitalSignature, valid);
+        var expired = entry(generator.generateKeyPair(), seal, ca, usage, Instant.now().minusSeconds(60));
+
+        Assertions.assertSame(sameKey, SigningKeyPool.findEquivalentKey(picked, List.of(otherCard, sameKey)));
+        Assertions.assertSame(otherCard, SigningKeyPool.findEquivalentKey(picked, List.of(otherIssuer, otherCard)));
+        Assertions.assertNull(SigningKeyPool.findEquivalentKey(picked, List.of(otherIssuer, otherUsage, expired)));
+    }
+
+    @Test
+    void testAcquireSpreadsLoadAcrossMembers() throws IOException {
+        var pool = new SigningKeyPool(createKeys(3), 3, 60_000);
+
+        var acquired = new ArrayList<SigningKeyPool.Member>();
+        for (int i = 0; i < 6; i++)
+            acquired.add(pool.acquire());
+
+        for (var member : pool.getMembers())
+            Assertions.assertEquals(2, member.getPendingCount());
+
+        // the member which finished its documents gets the next one
+        var first = acquired.get(0);
+        pool.onSigned(first);
+        pool.onSigned(first);
+        Assertions.assertSame(first, pool.acquire());
+        Assertions.assertEquals(2, first.getSignedCount());
+        pool.close();
+    }
+
+    @Test
+    void testFailingMemberIsSkippedUntilItCoolsDown() throws Exception {
+        var pool = new SigningKeyPool(createKeys(2), 2, 200);
+        var failing = pool.getMembers().get(0);
+        var healthy = pool.getMembers().get(1);
+
+        pool.onFailed(pool.acquire());
+        Assertions.assertTrue(failing.isHealthy());
+        pool.acquire();
+        pool.onFailed(failing);
+        Assertions.assertFalse(failing.isHealthy());
+        Assertions.assertEquals(2, failing.getFailedCount());
+
+        for (int i = 0; i < 4; i++)
+            Assertions.assertSame(healthy, pool.acquire());
+
+        Thread.sleep(250);
+        Assertions.assertTrue(failing.isHealthy());
+        Assertions.assertSame(failing, pool.acquire());
+        pool.close();
+    }
+
+    @Test
+    void testAllUnhealthyStillAssigns() throws IOException {
+        var pool = new SigningKeyPool(createKeys(1), 1, 60_000);
+        var member = pool.acquire();
+        pool.onFailed(member);
+
+        Assertions.assertFalse(member.isHealthy());
+        Assertions.assertSame(member, pool.acquire());
+        pool.onCancelled(member);
+        Assertions.assertEquals(0, member.getPendingCount());
+        pool.close();
+    }
+}
@@ -0,0 +1,124 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.SigningKeyClosedException;
+import digital.slovensko.autogram.core.errors.TokenQueueFullException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SigningKeyTest {
+    private static class ObservedToken extends Pkcs12SignatureToken {
+        private final AtomicInteger signing = new AtomicInteger();
+        private final AtomicInteger maxSigning = new AtomicInteger();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private volatile CountDownLatch release = new CountDownLatch(0);
+
+        ObservedToken() throws IOException {
+            super(Objects.requireNonNull(SigningKeyTest.class.getResource("/digital/slovensko/autogram/test.keystore")).getFile(),
+                    new KeyStore.PasswordProtection("".toCharArray()));
+        }
+
+        @Override
+        public SignatureValue sign(ToBeSigned toBeSigned, DigestAlgorithm digestAlgorithm, DSSPrivateKeyEntry keyEntry) {
+            maxSigning.accumulateAndGet(signing.incrementAndGet(), Math::max);
+            threads.add(Thread.currentThread().getName());
+            try {
+                release.await();
+                return super.sign(toBeSigned, digestAlgorithm, keyEntry);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                signing.decrementAndGet();
+            }
+        }
+    }
+
+    private static ToBeSigned dataToSign(int i) {
+        return new ToBeSigned(("data " + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testConcurrentSignsAreSerializedOnOneThread() throws Exception {
+        var token = new ObservedToken();
+        var key = new SigningKey(token, token.getKeys().get(0), 64);
+
+        var executor = Executors.newFixedThreadPool(8);
+        var futures = new ArrayList<Future<SignatureValue>>();
+        for (int i = 0; i < 32; i++) {
+            var data = dataToSign(i);
+            futures.add(executor.submit(() -> key.sign(data, DigestAlgorithm.SHA256)));
+        }
+
+        for (var future : futures)
+            Assertions.assertNotNull(future.get(10, TimeUnit.SECONDS).getValue());
+        executor.shutdown();
+
+        Assertions.assertEquals(1, token.maxSigning.get());
+        Assertions.assertEquals(1, token.threads.size());
+        Assertions.assertTrue(token.threads.iterator().next().startsWith("autogram-token-"));
+        Assertions.assertEquals(32, key.getSigningStats().getCount());
+        Assertions.assertEquals(32, key.getQueueWaitStats().getCount());
+        Assertions.assertEquals(0, key.getQueueDepth());
+        key.close();
+    }
+
+    @Test
+    void testFullQueueRejectsSign() throws Exception {
+        var token = new ObservedToken();
+        token.release = new CountDownLatch(1);
+        var key = new SigningKey(token, token.getKeys().get(0), 1);
+
+        var executor = Executors.newFixedThreadPool(2);
+        var signing = executor.submit(() -> key.sign(dataToSign(0), DigestAlgorithm.SHA256));
+        while (token.signing.get() == 0)
+            Thread.sleep(1);
+        var queued = executor.submit(() -> key.sign(dataToSign(1), DigestAlgorithm.SHA256));
+        while (key.getQueueDepth() == 0)
+            Thread.sleep(1);
+
+        var error = Assertions.assertThrows(TokenQueueFullException.class,
+                () -> key.sign(dataToSign(2), DigestAlgorithm.SHA256));
+        Assertions.assertTrue(error.getRetryAfterSeconds() >= 1);
+
+        token.release.countDown();
+        Assertions.assertNotNull(signing.get(10, TimeUnit.SECONDS));
+        Assertions.assertNotNull(queued.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        key.close();
+    }
+
+    @Test
+    void testTokenErrorIsRethrown() throws Exception {
+        var token = new ObservedToken();
+        var key = new SigningKey(token, token.getKeys().get(0), 1);
+
+        Assertions.assertThrows(NullPointerException.class, () -> key.sign(null, DigestAlgorithm.SHA256));
+        key.close();
+    }
+
+    @Test
+    void testClosedKeyRejectsSignAsClosed() throws Exception {
+        var token = new ObservedToken();
+        var key = new SigningKey(token, token.getKeys().get(0), 1);
+        key.close();
+
+        Assertions.assertThrows(SigningKeyClosedException.class, () -> key.sign(dataToSign(0), DigestAlgorithm.SHA256));
+    }
+}
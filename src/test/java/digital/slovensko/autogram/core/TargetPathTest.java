@@ -12,6 +12,8 @@ import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
+import digital.slovensko.autogram.core.errors.TargetAlreadyExistsException;
+
 import com.google.common.jimfs.Jimfs;
 
 public class TargetPathTest {
@@ -295,6 +297,60 @@ public class TargetPathTest {
         });
     }
 
+    /**
+     * `--cli -s /test/virtual/source/ -t /test/target/ --recursive`
+     */
+    @Test
+    public void testRecursiveDirectoryMirrorsSubdirectories() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(com.google.common.jimfs.Configuration.unix());
+        var sourceDirectory = fs.getPath("/test/virtual/source/");
+        Files.createDirectories(sourceDirectory.resolve("a/b"));
+
+        var targetPath = new TargetPath("/test/target/", sourceDirectory, false, false, true, true, fs, true);
+        targetPath.mkdirIfDir();
+
+        assertEqualPath("/test/target/top_signed.pdf", targetPath.getSaveFilePath(fs.getPath("/test/virtual/source/top.pdf")));
+        assertEqualPath("/test/target/a/b/nested_signed.pdf",
+                targetPath.getSaveFilePath(fs.getPath("/test/virtual/source/a/b/nested.pdf")));
+        assertTrue(Files.isDirectory(fs.getPath("/test/target/a/b")));
+    }
+
+    /**
+     * `--cli -s /test/virtual/source/ --parallel 4` with sources which map to the same target
+     */
+    @Test
+    public void testSourcesWithSameTargetGetUniqueFiles() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(com.google.common.jimfs.Configuration.unix());
+        var sourceDirectory = fs.getPath("/test/virtual/source/");
+        Files.createDirectories(sourceDirectory);
+
+        var targetPath = new TargetPath(null, sourceDirectory, false, false, true, fs, true);
+        targetPath.mkdirIfDir();
+
+        assertEqualPath("/test/virtual/source_signed/document_signed.asice",
+                targetPath.getSaveFilePath(fs.getPath("/test/virtual/source/document.xml")));
+        assertEqualPath("/test/virtual/source_signed/document_signed (1).asice",
+                targetPath.getSaveFilePath(fs.getPath("/test/virtual/source/document.txt")));
+    }
+
+    /**
+     * `--cli -s /test/virtual/source/ -t /test/target/ --force --parallel 4` with sources which map to the same target
+     */
+    @Test
+    public void testSourcesWithSameGivenTargetFail() throws IOException {
+        FileSystem fs = Jimfs.newFileSystem(com.google.common.jimfs.Configuration.unix());
+        var sourceDirectory = fs.getPath("/test/virtual/source/");
+        Files.createDirectories(sourceDirectory);
+
+        var targetPath = new TargetPath("/test/target/", sourceDirectory, true, false, true, fs, true);
+        targetPath.mkdirIfDir();
+
+        assertEqualPath("/test/target/document_signed.asice",
+                targetPath.getSaveFilePath(fs.getPath("/test/virtual/source/document.xml")));
+        assertThrows(TargetAlreadyExistsException.class,
+                () -> targetPath.getSaveFilePath(fs.getPath("/test/virtual/source/document.txt")));
+    }
+
     /* Assert helpers */
 
     private void assertEqualPath(FileSystem fs, String expected, String actual) {
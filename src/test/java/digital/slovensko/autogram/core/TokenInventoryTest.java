@@ -0,0 +1,220 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.SigningKeyClosedException;
+import digital.slovensko.autogram.drivers.TokenDriver;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TokenInventoryTest {
+    private static class RemovableToken extends Pkcs12SignatureToken {
+        private volatile boolean removed = false;
+        private volatile boolean closed = false;
+        private volatile List<DSSPrivateKeyEntry> keys;
+        private final Set<String> signingThreads = ConcurrentHashMap.newKeySet();
+
+        RemovableToken() throws IOException {
+            super(Objects.requireNonNull(TokenInventoryTest.class.getResource("/digital/slovensko/autogram/test.keystore")).getFile(),
+                    new KeyStore.PasswordProtection("".toCharArray()));
+        }
+
+        @Override
+        public SignatureValue sign(ToBeSigned toBeSigned, DigestAlgorithm digestAlgorithm, DSSPrivateKeyEntry keyEntry) {
+            if (removed)
+                throw new DSSException("Token has been removed");
+
+            var thread = Thread.currentThread().getName();
+            signingThreads.add(thread.substring(0, thread.lastIndexOf('-')));
+            return super.sign(toBeSigned, digestAlgorithm, keyEntry);
+        }
+
+        @Override
+        public List<DSSPrivateKeyEntry> getKeys() {
+            if (removed)
+                throw new DSSException("Token has been removed");
+
+            return keys != null ? keys : super.getKeys();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private static class CountingDriver extends TokenDriver {
+        private final AtomicInteger opened = new AtomicInteger();
+        private volatile RemovableToken lastToken;
+
+        CountingDriver(boolean needsPassword) {
+            super("Counting driver", Path.of("counting"), needsPassword, "counting");
+        }
+
+        @Override
+        public AbstractKeyStoreTokenConnection createTokenWithPassword(Integer slotId, char[] password) {
+            opened.incrementAndGet();
+            try {
+                lastToken = new RemovableToken();
+                return lastToken;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class CountingDetector implements DriverDetector {
+        private final AtomicInteger detections = new AtomicInteger();
+        private volatile List<TokenDriver> drivers;
+
+        CountingDetector(TokenDriver... drivers) {
+            this.drivers = List.of(drivers);
+        }
+
+        @Override
+        public List<TokenDriver> getAvailableDrivers() {
+            detections.incrementAndGet();
+            return drivers;
+        }
+    }
+
+    private static ToBeSigned data() {
+        return new ToBeSigned("data".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDriversAreDetectedOnceAndRefreshedInBackground() throws Exception {
+        var driver = new CountingDriver(false);
+        var detector = new CountingDetector(driver);
+        var inventory = new TokenInventory(detector, 50);
+
+        Assertions.assertEquals(List.of(driver), inventory.getAvailableDrivers());
+        Assertions.assertEquals(List.of(driver), inventory.getAvailableDrivers());
+        Assertions.assertEquals(1, detector.detections.get());
+
+        detector.drivers = List.of();
+        for (int i = 0; i < 100 && !inventory.getAvailableDrivers().isEmpty(); i++)
+            Thread.sleep(10);
+
+        Assertions.assertTrue(inventory.getAvailableDrivers().isEmpty());
+        Assertions.assertTrue(detector.detections.get() > 1);
+    }
+
+    @Test
+    void testTokenIsKeptAcrossPicks() {
+        var driver = new CountingDriver(false);
+        var inventory = new TokenInventory(new CountingDetector(driver), 60_000);
+
+        var openedToken = inventory.open(driver, -1, null);
+        var key = inventory.createSigningKey(openedToken, openedToken.getKeys().get(0));
+        Assertions.assertNotNull(key.sign(data(), DigestAlgorithm.SHA256));
+        key.close();
+
+        var token = driver.lastToken;
+        Assertions.assertFalse(token.closed);
+        Assertions.assertSame(openedToken, inventory.open(driver, -1, null));
+        Assertions.assertEquals(1, driver.opened.get());
+    }
+
+    @Test
+    void testKeptTokenIsOpenedAgainWhenItsKeysChange() {
+        var driver = new CountingDriver(false);
+        var inventory = new TokenInventory(new CountingDetector(driver), 60_000);
+
+        var openedToken = inventory.open(driver, -1, null);
+        Assertions.assertEquals(1, openedToken.getKeys().size());
+
+        // another card in the reader
+        var token = driver.lastToken;
+        token.keys = List.of();
+        var reopened = inventory.open(driver, -1, null);
+
+        Assertions.assertNotSame(openedToken, reopened);
+        Assertions.assertTrue(token.closed);
+        Assertions.assertEquals(1, reopened.getKeys().size());
+        Assertions.assertEquals(2, driver.opened.get());
+
+        // card taken out
+        driver.lastToken.removed = true;
+        Assertions.assertNotSame(reopened, inventory.open(driver, -1, null));
+        Assertions.assertEquals(3, driver.opened.get());
+    }
+
+    @Test
+    void testKeysOfKeptTokenShareItsExecutor() {
+        var driver = new CountingDriver(false);
+        var inventory = new TokenInventory(new CountingDetector(driver), 60_000);
+
+        var openedToken = inventory.open(driver, -1, null);
+        var first = inventory.createSigningKey(openedToken, openedToken.getKeys().get(0));
+        var second = inventory.createSigningKey(openedToken, openedToken.getKeys().get(0));
+        first.sign(data(), DigestAlgorithm.SHA256);
+        second.sign(data(), DigestAlgorithm.SHA256);
+        Assertions.assertEquals(1, driver.lastToken.signingThreads.size());
+
+        first.close();
+        Assertions.assertThrows(SigningKeyClosedException.class, () -> first.sign(data(), DigestAlgorithm.SHA256));
+        Assertions.assertNotNull(second.sign(data(), DigestAlgorithm.SHA256));
+        second.close();
+    }
+
+    @Test
+    void testTokenWithPasswordIsOpenedForEveryPick() {
+        var driver = new CountingDriver(true);
+        var inventory = new TokenInventory(new CountingDetector(driver), 60_000);
+
+        var openedToken = inventory.open(driver, -1, new char[0]);
+        Assertions.assertFalse(openedToken.isKept());
+        inventory.createSigningKey(openedToken, openedToken.getKeys().get(0)).close();
+        Assertions.assertTrue(driver.lastToken.closed);
+
+        inventory.open(driver, -1, new char[0]);
+        Assertions.assertEquals(2, driver.opened.get());
+    }
+
+    @Test
+    void testRemovedTokenIsDropped() {
+        var driver = new CountingDriver(false);
+        var inventory = new TokenInventory(new CountingDetector(driver), 60_000);
+
+        var openedToken = inventory.open(driver, -1, null);
+        var key = inventory.createSigningKey(openedToken, openedToken.getKeys().get(0));
+        var token = driver.lastToken;
+        token.removed = true;
+
+        Assertions.assertThrows(DSSException.class, () -> key.sign(data(), DigestAlgorithm.SHA256));
+        Assertions.assertTrue(token.closed);
+        Assertions.assertNotSame(openedToken, inventory.open(driver, -1, null));
+        Assertions.assertEquals(2, driver.opened.get());
+    }
+
+    @Test
+    void testTokenOfDisappearedDriverIsClosed() {
+        var driver = new CountingDriver(false);
+        var detector = new CountingDetector(driver);
+        var inventory = new TokenInventory(detector, 60_000);
+
+        inventory.open(driver, -1, null);
+        detector.drivers = List.of();
+        inventory.refresh();
+
+        Assertions.assertTrue(driver.lastToken.closed);
+    }
+}
@@ -0,0 +1,99 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.enumerations.ASiCContainerType;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.enumerations.SignaturePackaging;
+import digital.slovensko.autogram.util.SpooledContent;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+class XDCTransformerStreamingTest {
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"/>";
+    private static final String XSLT = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"html\"/></xsl:stylesheet>";
+
+    private static XDCTransformer transformer(String schema, String transformation) {
+        var params = new SigningParameters(SignatureLevel.XAdES_BASELINE_B, ASiCContainerType.ASiC_E,
+                "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1", SignaturePackaging.ENVELOPING,
+                DigestAlgorithm.SHA256, false, CanonicalizationMethod.INCLUSIVE, CanonicalizationMethod.INCLUSIVE,
+                CanonicalizationMethod.INCLUSIVE, schema, transformation, "http://example.com/form/1.0", false, 800);
+
+        return XDCTransformer.buildFromSigningParameters(params, MimeTypeEnum.HTML);
+    }
+
+    private static byte[] bytes(DSSDocument document) throws IOException {
+        try (var stream = document.openStream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Form xmlns=\"http://example.com/form/1.0\"><a>text</a><b/></Form>",
+            "<Form xmlns=\"http://example.com/form/1.0\" xmlns:x=\"urn:x\" x:id=\"1\" attr=\"a &quot;b&quot; &amp; &lt;c&gt;\">\n"
+                    + "  <x:item>1 &lt; 2 &amp;&amp; 3 &gt; 2 áčô 😀</x:item>\n"
+                    + "  <!-- comment --><?pi data?><![CDATA[<raw>]]>\r\n  <empty></empty>\n</Form>",
+            "<Form><nested xmlns=\"urn:inner\"><deep xmlns=\"\"/></nested></Form>",
+            "<xdc:Form xmlns:xdc=\"urn:not-the-container\"><xdc:a/></xdc:Form>",
+    })
+    void testStreamingOutputIsIdenticalToDOM(String xml) throws Exception {
+        var document = new InMemoryDocument(xml.getBytes(StandardCharsets.UTF_8), "form.xml");
+
+        for (var params : new String[][] { { XSD, XSLT }, { null, null }, { XSD, null } }) {
+            var expected = bytes(transformer(params[0], params[1]).transformDOM(document));
+            var actual = bytes(transformer(params[0], params[1]).transformStreaming(document));
+
+            Assertions.assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+            Assertions.assertArrayEquals(expected, actual);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<!-- leading --><Form/>",
+            "<Form/><?trailing pi?>",
+            "<!DOCTYPE Form [<!ENTITY e \"entity\">]><Form>&e;</Form>",
+    })
+    void testUnsupportedDocumentsFallBackToDOM(String xml) throws Exception {
+        var document = new InMemoryDocument(xml.getBytes(StandardCharsets.UTF_8), "form.xml");
+
+        Assertions.assertThrows(XDCTransformer.StreamingNotSupportedException.class,
+                () -> transformer(null, null).transformStreaming(document));
+        Assertions.assertArrayEquals(bytes(transformer(null, null).transformDOM(document)),
+                bytes(transformer(null, null).transform(document)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "abc.xml", "crystal_test_data/rozhodnutie_X4564-2.xml" })
+    void testStreamingOutputIsIdenticalToDOMForSampleDocuments(String resource) throws Exception {
+        var content = getClass().getResourceAsStream("/digital/slovensko/autogram/" + resource).readAllBytes();
+        var document = new InMemoryDocument(content, "document.xml");
+
+        Assertions.assertArrayEquals(bytes(transformer(XSD, XSLT).transformDOM(document)),
+                bytes(transformer(XSD, XSLT).transform(document)));
+    }
+
+    @Test
+    void testLargeOutputIsSpooledToFileReleasedWithTheDocument() throws Exception {
+        var xml = "<Form xmlns=\"http://example.com/form/1.0\">" + "<a>text</a>".repeat(200_000) + "</Form>";
+        var document = new InMemoryDocument(xml.getBytes(StandardCharsets.UTF_8), "form.xml");
+
+        var transformed = transformer(XSD, XSLT).transformStreaming(document);
+
+        var file = Assertions.assertInstanceOf(FileDocument.class, transformed).getFile();
+        Assertions.assertTrue(file.exists());
+        SpooledContent.release(transformed);
+        Assertions.assertFalse(file.exists());
+    }
+}
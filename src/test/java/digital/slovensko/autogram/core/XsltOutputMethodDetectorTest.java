@@ -0,0 +1,48 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+
+class XsltOutputMethodDetectorTest {
+    private static String xslt(String body) {
+        return "<?xml version=\"1.0\"?><xsl:stylesheet version=\"1.0\" "
+                + "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" + body + "</xsl:stylesheet>";
+    }
+
+    @Test
+    void testOutputMethodIsDetected() throws XMLStreamException {
+        Assertions.assertEquals(MimeTypeEnum.HTML,
+                XsltOutputMethodDetector.getOutputMimeType(xslt("<xsl:output method=\"html\"/>")));
+        Assertions.assertEquals(MimeTypeEnum.TEXT,
+                XsltOutputMethodDetector.getOutputMimeType(xslt("<xsl:template match=\"/\"/><xsl:output method=\"text\"/>")));
+        Assertions.assertNull(XsltOutputMethodDetector.getOutputMimeType(null));
+    }
+
+    @Test
+    void testOnlyTopLevelOutputIsConsidered() throws XMLStreamException {
+        var transformation = xslt("<xsl:template match=\"/\"><out:output xmlns:out=\"http://www.w3.org/1999/XSL/Transform\" method=\"html\"/></xsl:template>"
+                + "<xsl:output method=\"text\"/>");
+
+        Assertions.assertEquals("text", XsltOutputMethodDetector.getOutputMethod(transformation));
+    }
+
+    @Test
+    void testDetectionIsMemoized() throws XMLStreamException {
+        var transformation = xslt("<xsl:output method=\"html\" indent=\"yes\"/>");
+        XsltOutputMethodDetector.getOutputMimeType(transformation);
+        var misses = XsltOutputMethodDetector.getCache().getMisses();
+
+        XsltOutputMethodDetector.getOutputMimeType(transformation);
+
+        Assertions.assertEquals(misses, XsltOutputMethodDetector.getCache().getMisses());
+    }
+
+    @Test
+    void testUnsupportedMethodThrows() {
+        Assertions.assertThrows(RuntimeException.class,
+                () -> XsltOutputMethodDetector.getOutputMimeType(xslt("<xsl:output method=\"xml\"/>")));
+    }
+}
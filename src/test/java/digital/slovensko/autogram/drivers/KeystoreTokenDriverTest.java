@@ -0,0 +1,129 @@
+package digital.slovensko.autogram.drivers;
+
+import digital.slovensko.autogram.core.DefaultDriverDetector;
+import digital.slovensko.autogram.core.SigningKey;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.PINIncorrectException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+class KeystoreTokenDriverTest {
+    private static final Path PKCS12_KEYSTORE = Path.of(Objects.requireNonNull(
+            KeystoreTokenDriverTest.class.getResource("/digital/slovensko/autogram/test.keystore")).getFile());
+
+    private static Path convertToJks(Path directory, char[] password) throws Exception {
+        var pkcs12 = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream(PKCS12_KEYSTORE.toFile())) {
+            pkcs12.load(in, new char[0]);
+        }
+
+        var jks = KeyStore.getInstance("JKS");
+        jks.load(null, null);
+        for (var alias : Collections.list(pkcs12.aliases()))
+            jks.setEntry(alias, pkcs12.getEntry(alias, new KeyStore.PasswordProtection(new char[0])),
+                    new KeyStore.PasswordProtection(password));
+
+        var path = directory.resolve("seal.jks");
+        try (var out = new FileOutputStream(path.toFile())) {
+            jks.store(out, password);
+        }
+
+        return path;
+    }
+
+    @Test
+    void testConfiguredPinSkipsPasswordPrompt() {
+        var withPin = new KeystoreTokenDriver("seal", PKCS12_KEYSTORE, new char[0], "keystore");
+        var withoutPin = new KeystoreTokenDriver("seal", PKCS12_KEYSTORE, null, "keystore");
+
+        Assertions.assertFalse(withPin.needsPassword());
+        Assertions.assertTrue(withoutPin.needsPassword());
+        Assertions.assertEquals("PKCS12", withPin.getKeystoreType());
+        Assertions.assertFalse(withPin.createTokenWithPassword(-1, "ignored".toCharArray()).getKeys().isEmpty());
+        Assertions.assertFalse(withoutPin.createTokenWithPassword(-1, new char[0]).getKeys().isEmpty());
+    }
+
+    @Test
+    void testJksWithPassword(@TempDir Path directory) throws Exception {
+        var password = "secret".toCharArray();
+        var driver = new KeystoreTokenDriver("seal", convertToJks(directory, password), null, "keystore");
+
+        Assertions.assertEquals("JKS", driver.getKeystoreType());
+        Assertions.assertFalse(driver.createTokenWithPassword(-1, password).getKeys().isEmpty());
+
+        var error = Assertions.assertThrows(DSSException.class,
+                () -> driver.createTokenWithPassword(-1, "wrong".toCharArray()).getKeys());
+        Assertions.assertInstanceOf(PINIncorrectException.class, AutogramException.createFromDSSException(error));
+    }
+
+    @Test
+    void testKeySignsOnAllCores() throws Exception {
+        var driver = new KeystoreTokenDriver("seal", PKCS12_KEYSTORE, new char[0], "keystore");
+        var token = driver.createTokenWithPassword(-1, null);
+        var key = new SigningKey(token, token.getKeys().get(0), 64, driver.getSigningConcurrency());
+
+        Assertions.assertEquals(Runtime.getRuntime().availableProcessors(), key.getSigningConcurrency());
+
+        var executor = Executors.newFixedThreadPool(8);
+        var futures = new ArrayList<Future<SignatureValue>>();
+        for (int i = 0; i < 32; i++) {
+            var data = new ToBeSigned(("data " + i).getBytes(StandardCharsets.UTF_8));
+            futures.add(executor.submit(() -> key.sign(data, DigestAlgorithm.SHA256)));
+        }
+
+        for (var future : futures)
+            Assertions.assertNotNull(future.get(10, TimeUnit.SECONDS).getValue());
+        executor.shutdown();
+        Assertions.assertEquals(32, key.getSigningStats().getCount());
+        key.close();
+    }
+
+    @Test
+    void testDetectorOffersConfiguredKeystore() {
+        Assumptions.assumeTrue(System.getenv(KeystoreTokenDriver.PATH_ENVIRONMENT_VARIABLE) == null);
+
+        var drivers = new DefaultDriverDetector(PKCS12_KEYSTORE.toString()).getAvailableDrivers();
+        Assertions.assertEquals(DefaultDriverDetector.TokenDriverShortnames.KEYSTORE, drivers.get(0).getShortname());
+        Assertions.assertInstanceOf(KeystoreTokenDriver.class, drivers.get(0));
+
+        var missing = new DefaultDriverDetector(PKCS12_KEYSTORE.resolveSibling("missing.p12").toString());
+        Assertions.assertTrue(missing.getAvailableDrivers().stream().noneMatch(KeystoreTokenDriver.class::isInstance));
+    }
+
+    @Test
+    void testDetectorFollowsKeystorePathChanges() {
+        Assumptions.assumeTrue(System.getenv(KeystoreTokenDriver.PATH_ENVIRONMENT_VARIABLE) == null);
+
+        var path = new AtomicReference<String>();
+        var detector = new DefaultDriverDetector(path::get);
+        Assertions.assertTrue(detector.getAvailableDrivers().stream().noneMatch(KeystoreTokenDriver.class::isInstance));
+
+        path.set(PKCS12_KEYSTORE.toString());
+        var keystore = detector.getAvailableDrivers().get(0);
+        Assertions.assertInstanceOf(KeystoreTokenDriver.class, keystore);
+        // kept tokens are looked up by driver, the same path has to give the same driver
+        Assertions.assertSame(keystore, detector.getAvailableDrivers().get(0));
+
+        path.set(null);
+        Assertions.assertTrue(detector.getAvailableDrivers().stream().noneMatch(KeystoreTokenDriver.class::isInstance));
+    }
+}
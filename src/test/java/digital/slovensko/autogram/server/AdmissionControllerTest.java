@@ -0,0 +1,52 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.errors.ServiceOverloadedException;
+import digital.slovensko.autogram.server.errors.TooManyRequestsException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControllerTest {
+    @Test
+    void testInFlightJobsAreLimited() {
+        var controller = new AdmissionController(2, 0, 0, 5);
+        var first = controller.admit("a", 0);
+        controller.admit("b", 0);
+
+        var e = Assertions.assertThrows(ServiceOverloadedException.class, () -> controller.admit("c", 0));
+        var response = ErrorResponse.buildFromException(e);
+        Assertions.assertEquals(503, response.getStatusCode());
+        Assertions.assertEquals(5, response.getRetryAfterSeconds());
+
+        first.release();
+        first.release();
+        Assertions.assertEquals(1, controller.getInFlightJobs());
+        Assertions.assertDoesNotThrow(() -> controller.admit("c", 0));
+    }
+
+    @Test
+    void testOriginIsLimited() {
+        var controller = new AdmissionController(0, 0, 1, 3);
+        controller.admit("https://dms.example", 0);
+
+        var e = Assertions.assertThrows(TooManyRequestsException.class,
+                () -> controller.admit("https://dms.example", 0));
+        Assertions.assertEquals(429, ErrorResponse.buildFromException(e).getStatusCode());
+        Assertions.assertDoesNotThrow(() -> controller.admit("https://other.example", 0));
+    }
+
+    @Test
+    void testQueuedBytesAreLimited() {
+        var controller = new AdmissionController(0, 100, 0, 1);
+
+        // single oversized job is admitted so that it can be signed at all
+        var large = controller.admit("a", 150);
+        Assertions.assertThrows(ServiceOverloadedException.class, () -> controller.admit("b", 1));
+        large.release();
+
+        var small = controller.admit("a", 60);
+        Assertions.assertThrows(ServiceOverloadedException.class, () -> controller.admit("b", 0).ensureBytes(50));
+        small.ensureBytes(40);
+        Assertions.assertEquals(60, controller.getQueuedBytes());
+    }
+}
@@ -0,0 +1,98 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import digital.slovensko.autogram.server.dto.SignRequestBody;
+import digital.slovensko.autogram.util.SpooledContent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+class DocumentContentExtractingReaderTest {
+    private final Gson gson = new Gson();
+
+    @Test
+    void testDocumentContentIsDivertedFromJson() throws IOException {
+        var json = "{\"document\":{\"filename\":\"a.txt\",\"content\":\"SGVsbG8=\"},\"payloadMimeType\":\"text/plain;base64\"}";
+        var content = new SpooledContent();
+        var reader = new DocumentContentExtractingReader(new StringReader(json), content);
+
+        var body = gson.fromJson(reader, SignRequestBody.class);
+        content.close();
+
+        Assertions.assertTrue(reader.isDocumentContentFound());
+        Assertions.assertEquals("SGVsbG8=", new String(content.openStream().readAllBytes(), StandardCharsets.UTF_8));
+        Assertions.assertNotNull(body);
+    }
+
+    @Test
+    void testSpooledDocumentIsDecoded() throws IOException {
+        var json = "{\"payloadMimeType\":\"text/plain;base64\",\"parameters\":{\"content\":\"x\"},\"document\":{\"content\":\"SGVsbG8=\"}}";
+        var content = new SpooledContent();
+        var reader = new DocumentContentExtractingReader(new StringReader(json), content);
+
+        var body = gson.fromJson(reader, SignRequestBody.class);
+        content.close();
+        body.setSpooledDocumentContent(content);
+
+        Assertions.assertEquals("Hello", new String(body.getDocument().openStream().readAllBytes(), StandardCharsets.UTF_8));
+        body.releaseDocumentContent();
+    }
+
+    @Test
+    void testEscapedContentIsUnescaped() throws IOException {
+        var json = "{\"document\":{\"content\":\"<a href=\\\"x\\/y\\\">\\u010d\\n</a>\"}}";
+        var content = new SpooledContent();
+        var reader = new DocumentContentExtractingReader(new StringReader(json), content);
+
+        gson.fromJson(reader, SignRequestBody.class);
+        content.close();
+
+        Assertions.assertEquals("<a href=\"x/y\">č\n</a>", new String(content.openStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNestedContentKeysAreNotDiverted() throws IOException {
+        var json = "{\"parameters\":{\"content\":\"keep\"},\"content\":\"keep\",\"document\":{\"filename\":\"content\"}}";
+        var content = new SpooledContent();
+        var reader = new DocumentContentExtractingReader(new StringReader(json), content);
+
+        gson.fromJson(reader, SignRequestBody.class);
+        content.close();
+
+        Assertions.assertFalse(reader.isDocumentContentFound());
+        Assertions.assertEquals(0, content.size());
+    }
+
+    @Test
+    void testUnterminatedContentIsMalformed() {
+        var json = "{\"document\":{\"content\":\"SGVsbG8";
+        var reader = new DocumentContentExtractingReader(new StringReader(json), new SpooledContent());
+
+        Assertions.assertThrows(JsonSyntaxException.class, () -> gson.fromJson(reader, SignRequestBody.class));
+    }
+
+    @Test
+    void testLargeContentIsSpilledToFile() throws IOException {
+        var raw = new byte[3 * SpooledContent.DEFAULT_MEMORY_THRESHOLD];
+        for (int i = 0; i < raw.length; i++)
+            raw[i] = (byte) i;
+
+        var json = "{\"document\":{\"content\":\"" + Base64.getEncoder().encodeToString(raw)
+                + "\"},\"payloadMimeType\":\"application/pdf;base64\"}";
+        var content = new SpooledContent();
+        var reader = new DocumentContentExtractingReader(new StringReader(json), content);
+
+        var body = gson.fromJson(reader, SignRequestBody.class);
+        content.close();
+        body.setSpooledDocumentContent(content);
+
+        Assertions.assertFalse(content.isInMemory());
+        Assertions.assertArrayEquals(raw, body.getDocument().openStream().readAllBytes());
+        body.releaseDocumentContent();
+    }
+}
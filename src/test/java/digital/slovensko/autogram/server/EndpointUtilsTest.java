@@ -0,0 +1,59 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import digital.slovensko.autogram.server.dto.SignResponse;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Base64;
+import java.util.Random;
+
+class EndpointUtilsTest {
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.stop(0);
+    }
+
+    @Test
+    void testBase64DocumentResponseIsValidJson() throws Exception {
+        // larger than one encoding chunk and not a multiple of 3, so the last chunk is padded
+        var content = new byte[100 * 1024 + 1];
+        new Random(42).nextBytes(content);
+
+        var response = respondWith(new InMemoryDocument(content), new SignResponse(null, "CN=Signer", "CN=\"Issuer\""));
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(String.valueOf(response.body().length()),
+                response.headers().firstValue("Content-Length").orElseThrow());
+
+        var json = JsonParser.parseString(response.body()).getAsJsonObject();
+        Assertions.assertArrayEquals(content, Base64.getDecoder().decode(json.get("content").getAsString()));
+        Assertions.assertEquals("CN=Signer", json.get("signedBy").getAsString());
+        Assertions.assertEquals("CN=\"Issuer\"", json.get("issuedby").getAsString());
+    }
+
+    private HttpResponse<String> respondWith(DSSDocument document, SignResponse signResponse)
+            throws IOException, InterruptedException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/sign", exchange -> EndpointUtils.respondWithBase64Document(document, signResponse,
+                exchange));
+        server.start();
+
+        var uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/sign");
+        return HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,85 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+class MultipartReaderTest {
+    private static final String BOUNDARY = "----autogram1234";
+
+    private static byte[] multipart(byte[] document) throws IOException {
+        var out = new ByteArrayOutputStream();
+        out.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"body\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + "{\"payloadMimeType\":\"application/pdf\"}\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"document\"; filename=\"dokument.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(document);
+        out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    @Test
+    void testBoundaryIsParsedFromContentType() {
+        Assertions.assertEquals(BOUNDARY, MultipartReader.getBoundary("multipart/form-data; boundary=" + BOUNDARY));
+        Assertions.assertEquals("a b", MultipartReader.getBoundary("Multipart/Form-Data; boundary=\"a b\""));
+        Assertions.assertNull(MultipartReader.getBoundary("application/json"));
+        Assertions.assertNull(MultipartReader.getBoundary(null));
+    }
+
+    @Test
+    void testPartsAreRead() throws IOException {
+        var document = new byte[200 * 1024];
+        for (int i = 0; i < document.length; i++)
+            document[i] = (byte) (i % 251);
+
+        // boundary-like bytes inside the content must not end the part
+        var marker = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(marker, 0, document, 64 * 1024 - 3, marker.length);
+
+        var reader = new MultipartReader(new ByteArrayInputStream(multipart(document)), BOUNDARY);
+
+        var body = reader.nextPart();
+        Assertions.assertEquals("body", body.name());
+        Assertions.assertEquals("application/json", body.contentType());
+        Assertions.assertEquals("{\"payloadMimeType\":\"application/pdf\"}",
+                new String(body.content().readAllBytes(), StandardCharsets.UTF_8));
+
+        var file = reader.nextPart();
+        Assertions.assertEquals("document", file.name());
+        Assertions.assertEquals("dokument.pdf", file.filename());
+        Assertions.assertArrayEquals(document, file.content().readAllBytes());
+
+        Assertions.assertNull(reader.nextPart());
+    }
+
+    @Test
+    void testUnreadPartIsSkipped() throws IOException {
+        var reader = new MultipartReader(new ByteArrayInputStream(multipart("abc".getBytes())), BOUNDARY);
+
+        reader.nextPart();
+        var file = reader.nextPart();
+        Assertions.assertEquals("document", file.name());
+        Assertions.assertEquals("abc", new String(file.content().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testTruncatedBodyIsMalformed() throws IOException {
+        var content = multipart("abc".getBytes());
+        var truncated = new byte[content.length - BOUNDARY.length() - 10];
+        System.arraycopy(content, 0, truncated, 0, truncated.length);
+
+        var reader = new MultipartReader(new ByteArrayInputStream(truncated), BOUNDARY);
+        reader.nextPart();
+        var file = reader.nextPart();
+
+        Assertions.assertThrows(MalformedBodyException.class, () -> file.content().readAllBytes());
+    }
+}
@@ -2,11 +2,14 @@ package digital.slovensko.autogram.server.dto;
 
 import digital.slovensko.autogram.server.errors.MalformedBodyException;
 import digital.slovensko.autogram.server.errors.RequestValidationException;
+import eu.europa.esig.dss.enumerations.ASiCContainerType;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.util.List;
 
 class SignRequestBodyTest {
 
@@ -1139,4 +1142,41 @@ class SignRequestBodyTest {
 
         Assertions.assertThrows(MalformedBodyException.class, signRequestBody::getParameters);
     }
+
+    @Test
+    void testBundleDocumentsGetMimeTypesFromFilenames() throws Exception {
+        var documents = List.of(new Document("a.txt", "YQ=="), new Document("b.pdf", "Yg=="));
+        var body = new SignRequestBody(null, documents, bundleParameters(ASiCContainerType.ASiC_E), "text/plain;base64",
+                null);
+
+        Assertions.assertTrue(body.isBundle());
+        var parsed = body.getDocuments();
+        Assertions.assertEquals(2, parsed.size());
+        Assertions.assertEquals(MimeTypeEnum.TEXT, parsed.get(0).getMimeType());
+        Assertions.assertEquals(MimeTypeEnum.PDF, parsed.get(1).getMimeType());
+        Assertions.assertDoesNotThrow(body::getParameters);
+    }
+
+    @Test
+    void testBundleDocumentsMustHaveUniqueFilenames() {
+        var documents = List.of(new Document("a.txt", "YQ=="), new Document("a.txt", "Yg=="));
+        var body = new SignRequestBody(null, documents, bundleParameters(ASiCContainerType.ASiC_E), "text/plain;base64",
+                null);
+
+        Assertions.assertThrows(RequestValidationException.class, body::getDocuments);
+    }
+
+    @Test
+    void testBundleRequiresASiCEContainer() {
+        var documents = List.of(new Document("a.txt", "YQ=="), new Document("b.txt", "Yg=="));
+        var body = new SignRequestBody(null, documents, bundleParameters(ASiCContainerType.ASiC_S), "text/plain;base64",
+                null);
+
+        Assertions.assertThrows(RequestValidationException.class, body::getParameters);
+    }
+
+    private static ServerSigningParameters bundleParameters(ASiCContainerType container) {
+        return new ServerSigningParameters(SignatureLevel.XAdES_BASELINE_B, container, null, null, null, null, null,
+                null, null, null, null, null, null, false, null);
+    }
 }
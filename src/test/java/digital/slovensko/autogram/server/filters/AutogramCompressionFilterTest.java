@@ -0,0 +1,152 @@
+package digital.slovensko.autogram.server.filters;
+
+import com.sun.net.httpserver.HttpServer;
+import digital.slovensko.autogram.server.EndpointUtils;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+class AutogramCompressionFilterTest {
+    private HttpServer server;
+    private URI uri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // echoes the request body, declaring its exact length like EndpointUtils does
+        server.createContext("/echo", exchange -> {
+            var body = exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", exchange.getRequestHeaders().getFirst("Content-Type"));
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.getResponseBody().close();
+        }).getFilters().add(new AutogramCompressionFilter());
+        // reads the body and maps failures like the endpoints do
+        server.createContext("/limited", exchange -> {
+            try {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            } catch (Exception e) {
+                EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+            }
+        }).getFilters().add(new AutogramCompressionFilter(16 * 1024));
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/echo");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static String json() {
+        return "{\"content\":\"" + "<Document>Lorem ipsum</Document>".repeat(500) + "\"}";
+    }
+
+    @Test
+    void testGzipRequestAndResponse() throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .header("Content-Encoding", "gzip")
+                .header("Accept-Encoding", "deflate, gzip;q=0.8")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(gzip(json().getBytes(StandardCharsets.UTF_8))))
+                .build();
+
+        var response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        Assertions.assertTrue(response.body().length < json().length() / 10);
+        var decompressed = new GZIPInputStream(new ByteArrayInputStream(response.body())).readAllBytes();
+        Assertions.assertEquals(json(), new String(decompressed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNotCompressedWithoutAcceptEncodingOrForBinaryContent() throws IOException, InterruptedException {
+        var client = HttpClient.newHttpClient();
+        var plain = client.send(HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json())).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        Assertions.assertEquals(json(), plain.body());
+
+        var binary = client.send(HttpRequest.newBuilder(uri).header("Content-Type", "application/pdf")
+                .header("Accept-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofString(json())).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertTrue(binary.headers().firstValue("Content-Encoding").isEmpty());
+        Assertions.assertEquals(json(), binary.body());
+    }
+
+    @Test
+    void testAcceptedEncodingIsNegotiated() {
+        Assertions.assertEquals("gzip", AutogramCompressionFilter.getAcceptedEncoding("gzip, deflate, br"));
+        Assertions.assertEquals("deflate", AutogramCompressionFilter.getAcceptedEncoding("gzip;q=0, deflate"));
+        Assertions.assertNull(AutogramCompressionFilter.getAcceptedEncoding("br, identity"));
+        Assertions.assertNull(AutogramCompressionFilter.getAcceptedEncoding(null));
+    }
+
+    @Test
+    void testDecompressedBodyOverLimitIsRejected() throws IOException, InterruptedException {
+        var limited = uri.resolve("/limited");
+        var bomb = gzip(new byte[1024 * 1024]);
+        Assertions.assertTrue(bomb.length < 16 * 1024);
+
+        var response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(limited)
+                .header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(bomb)).build(), HttpResponse.BodyHandlers.ofString());
+
+        Assertions.assertEquals(413, response.statusCode());
+        Assertions.assertTrue(response.body().contains("PAYLOAD_TOO_LARGE"));
+    }
+
+    @Test
+    void testBodyWithinLimitIsAccepted() throws IOException, InterruptedException {
+        var limited = uri.resolve("/limited");
+
+        var compressed = HttpClient.newHttpClient().send(HttpRequest.newBuilder(limited).header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(gzip(new byte[1024]))).build(),
+                HttpResponse.BodyHandlers.discarding());
+        Assertions.assertEquals(204, compressed.statusCode());
+
+        // separate client, the server may close the connection without reading the rejected body
+        var tooLarge = HttpClient.newHttpClient().send(HttpRequest.newBuilder(limited)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[32 * 1024])).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(413, tooLarge.statusCode());
+        // same error body as a limit exceeded while decompressing
+        Assertions.assertTrue(tooLarge.body().contains("PAYLOAD_TOO_LARGE"));
+    }
+
+    @Test
+    void testUnsupportedEncodingIsRejected() throws IOException, InterruptedException {
+        var response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                .header("Content-Encoding", "br")
+                .POST(HttpRequest.BodyPublishers.ofString(json())).build(), HttpResponse.BodyHandlers.ofString());
+
+        Assertions.assertEquals(415, response.statusCode());
+        Assertions.assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+        Assertions.assertTrue(response.body().contains("UNSUPPORTED_CONTENT_ENCODING"));
+    }
+}
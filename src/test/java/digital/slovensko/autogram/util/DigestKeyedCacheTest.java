@@ -0,0 +1,62 @@
+package digital.slovensko.autogram.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class DigestKeyedCacheTest {
+    @Test
+    void testValuesAreReusedAndCounted() {
+        var cache = new DigestKeyedCache<String>(2);
+        var loads = new AtomicInteger();
+        DigestKeyedCache.Loader<String, RuntimeException> loader = text -> {
+            loads.incrementAndGet();
+            return text.toUpperCase();
+        };
+
+        Assertions.assertEquals("A", cache.get("a", loader));
+        Assertions.assertEquals("A", cache.get("a", loader));
+
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        var cache = new DigestKeyedCache<String>(2);
+        var loads = new AtomicInteger();
+        DigestKeyedCache.Loader<String, RuntimeException> loader = text -> {
+            loads.incrementAndGet();
+            return text;
+        };
+
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        cache.get("c", loader); // evicts b
+
+        Assertions.assertEquals(2, cache.size());
+        cache.get("a", loader);
+        Assertions.assertEquals(3, loads.get());
+        cache.get("b", loader);
+        Assertions.assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testLoaderExceptionIsNotCached() {
+        var cache = new DigestKeyedCache<String>(2);
+
+        Assertions.assertThrows(Exception.class, () -> cache.get("a", text -> {
+            throw new Exception("invalid");
+        }));
+        Assertions.assertEquals("a", cache.get("a", text -> text));
+    }
+
+    @Test
+    void testDigest() {
+        Assertions.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                DigestKeyedCache.digest(""));
+    }
+}
@@ -0,0 +1,57 @@
+package digital.slovensko.autogram.util;
+
+import eu.europa.esig.dss.model.FileDocument;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+class SpooledContentTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReleaseDeletesSpilledFile() throws Exception {
+        var content = new SpooledContent(16);
+        content.write(new byte[64]);
+        content.close();
+        Assertions.assertFalse(content.isInMemory());
+        Assertions.assertEquals(64, content.openStream().readAllBytes().length);
+
+        var document = content.toDocument("a.bin", null);
+        var file = ((FileDocument) document).getFile().toPath();
+        Assertions.assertTrue(Files.exists(file));
+
+        SpooledContent.release(document);
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testSmallContentStaysInMemory() throws Exception {
+        var content = SpooledContent.readFrom(new ByteArrayInputStream(new byte[8]));
+
+        Assertions.assertTrue(content.isInMemory());
+        Assertions.assertEquals(8, content.size());
+    }
+
+    @Test
+    void testOnlyStaleSpoolFilesAreDeleted() throws Exception {
+        var stale = Files.createFile(directory.resolve("autogram-1.spool"));
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        var recent = Files.createFile(directory.resolve("autogram-2.spool"));
+        var other = Files.createFile(directory.resolve("other.spool"));
+        Files.setLastModifiedTime(other, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        SpooledContent.deleteStaleFiles(directory, Duration.ofDays(1));
+
+        Assertions.assertFalse(Files.exists(stale));
+        Assertions.assertTrue(Files.exists(recent));
+        Assertions.assertTrue(Files.exists(other));
+    }
+}